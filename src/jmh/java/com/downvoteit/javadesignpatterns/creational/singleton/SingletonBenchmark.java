@@ -0,0 +1,62 @@
+package com.downvoteit.javadesignpatterns.creational.singleton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton pattern benchmark
+ *
+ * Details
+ * 1. Measures the cost of getInstance() of every singleton variant when many threads call it at once
+ * 2. Throughput mode reports operations per microsecond, sample time mode reports latency percentiles (p99, p99.99)
+ * 3. Every variant is already initialized after warmup so the steady state (hot path) is measured
+ * 4. Lazy creation is not thread-safe and is only included as a lower bound
+ *
+ * Usage
+ * 1. mvn -B -P benchmark package
+ * 2. java -cp target/benchmarks.jar com.downvoteit.javadesignpatterns.creational.singleton.SingletonBenchmark (1 to 64 threads)
+ * 3. java -jar target/benchmarks.jar SingletonBenchmark -t 16 (single thread count, any JMH option)
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingletonBenchmark {
+  private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    for (int threads : THREADS) {
+      ChainedOptionsBuilder options = new OptionsBuilder()
+          .parent(new CommandLineOptions(args)) // extra JMH options (e.g. -rf json -rff result.json)
+          .include(SingletonBenchmark.class.getSimpleName())
+          .threads(threads);
+      new Runner(options.build()).run();
+    }
+  }
+
+  @Benchmark public Object lazy() { return AirForceOneLazy.getInstance(); }
+  @Benchmark public Object eager() { return AirForceOneEager.getInstance(); }
+  @Benchmark public Object synchronizedLazy() { return AirForceOneSynchronized.getInstance(); }
+  @Benchmark public Object doubleCheckedLocking() { return AirForceOneDoubleCheckedLocking.getInstance(); }
+  @Benchmark public Object holder() { return AirForceOneHolder.getInstance(); }
+  @Benchmark public Object enumConstant() { return AirForceOneEnum.INSTANCE; }
+}
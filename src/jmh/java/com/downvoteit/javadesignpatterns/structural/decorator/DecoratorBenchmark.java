@@ -0,0 +1,54 @@
+package com.downvoteit.javadesignpatterns.structural.decorator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorator pattern benchmark
+ *
+ * Details
+ * 1. Compares a decorator chain of the given depth with the same chain sealed into a SealedAircraft
+ * 2. Fittings alternate between luxury and bulletproof so the call sites stay polymorphic like in a real configuration
+ *
+ * Usage
+ * 1. mvn -B -P benchmark package
+ * 2. java -jar target/benchmarks.jar DecoratorBenchmark
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoratorBenchmark {
+  @Param({"1", "2", "4", "8", "16", "32", "64"})
+  private int depth;
+  private Aircraft chain;
+  private Aircraft sealed;
+
+  @Setup
+  public void setUp() {
+    Aircraft aircraft = new Boeing747();
+    for (int i = 0; i < depth; i++) aircraft = i % 2 == 0 ? new LuxuryFittings(aircraft) : new BulletproofFittings(aircraft);
+    chain = aircraft;
+    sealed = SealedAircraft.seal(aircraft);
+  }
+
+  @Benchmark public float chainWeight() { return chain.getBaseWeight(); }
+  @Benchmark public float sealedWeight() { return sealed.getBaseWeight(); }
+  @Benchmark public void chainFly() { chain.fly(); }
+  @Benchmark public void sealedFly() { sealed.fly(); }
+}
@@ -1,8 +1,15 @@
 package com.downvoteit.javadesignpatterns.behavioral.iterator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Iterator pattern
@@ -22,6 +29,8 @@ import java.util.NoSuchElementException;
  * Implementations
  * 1. External iterator (client asks for next element)
  * 2. Internal iterator (client cannot access it directly; iterator traverses the internal aggregate/collection)
+ * 3. Splitting iterator (java.util.Spliterator) over several backing stores for parallel streams
+ * 4. Aggregate partitioned by type (filtered iterators skip the other types, elements are fetched in bulk)
  *
  * Examples in JDK
  * 1. java.util.Iterator
@@ -45,19 +54,41 @@ public class IteratorPattern {
       while (jets.hasNext()) System.out.print(jets.next()  + " ");
     }
     System.out.println();
+    { // Stream over all aircraft objects (split across jets and choppers without copying)
+      AirForce airForce = new AirForce();
+      System.out.println(airForce.parallelStream().filter(aircraft -> aircraft instanceof Helicopter).count());
+    }
+    { // Iterator only for helicopters over an aggregate of any number of types, fetched in chunks
+      TypedAirForce airForce = new TypedAirForce();
+      for (int i = 0; i < 1000; i++) airForce.add(i % 10 == 0 ? new AHCobra() : new F16());
+      airForce.add(new UH60BlackHawk());
+      Iterator choppers = airForce.createIterator(Helicopter.class); // F16 partition is never touched
+      Aircraft[] buffer = new Aircraft[64];
+      int count = 0;
+      for (int fetched; (fetched = choppers.next(buffer)) > 0; ) count += fetched;
+      System.out.println(count); // 100 + 1 = 101
+    }
   }
 }
 
 interface Aircraft {}
+interface Jet extends Aircraft {}
 interface Helicopter extends Aircraft {}
 
-class F16 implements Aircraft { @Override public String toString() { return "F16"; } }
+class F16 implements Jet { @Override public String toString() { return "F16"; } }
 class AHCobra implements Helicopter { @Override public String toString() { return "AHCobra"; } }
+class UH60BlackHawk implements Helicopter { @Override public String toString() { return "UH60BlackHawk"; } }
 
 // 1. Iterator (External iterator is called by the client)
 interface Iterator {
   Aircraft next(); // Internal iterator (works with the underlying aggregate/collection)
   boolean hasNext();
+  default int next(Aircraft[] buffer) { // bulk fetch, returns the number of elements written (0 when exhausted)
+    int count = 0;
+    while (count < buffer.length && hasNext()) buffer[count++] = next();
+    return count;
+  }
+  default void forEachRemaining(Consumer<? super Aircraft> action) { while (hasNext()) action.accept(next()); }
 }
 
 class AirForce {
@@ -74,6 +105,9 @@ class AirForce {
   public Helicopter[] getChoppers() { return choppers; }
   public Iterator createAircraftIterator() { return new AirForceIterator(this); } // 4. Concrete Aggregate
   public Iterator createJetsIterator() { return new JetsIterator(jets); }
+  public Spliterator<Aircraft> spliterator() { return new AirForceSpliterator(jets, choppers, 0, jets.size() + choppers.length); }
+  public Stream<Aircraft> stream() { return StreamSupport.stream(spliterator(), false); }
+  public Stream<Aircraft> parallelStream() { return StreamSupport.stream(spliterator(), true); }
 }
 
 // 2. Concrete Iterator
@@ -106,3 +140,106 @@ class JetsIterator implements Iterator {
   }
   @Override public boolean hasNext() { return jets.size() > jetsIndex; }
 }
+
+// Splitting iterator over the jets followed by the choppers (index i < jets.size() is a jet, the rest are choppers)
+class AirForceSpliterator implements Spliterator<Aircraft> {
+  private final List<Aircraft> jets;
+  private final Helicopter[] choppers;
+  private final int jetsSize;
+  private int index; // current position, advanced by tryAdvance/forEachRemaining
+  private final int fence; // one past the last position
+  public AirForceSpliterator(List<Aircraft> jets, Helicopter[] choppers, int origin, int fence) { this(jets, choppers, origin, fence, jets.size()); }
+  private AirForceSpliterator(List<Aircraft> jets, Helicopter[] choppers, int origin, int fence, int jetsSize) {
+    this.jets = jets;
+    this.choppers = choppers;
+    this.jetsSize = jetsSize;
+    this.index = origin;
+    this.fence = fence;
+  }
+  @Override
+  public boolean tryAdvance(Consumer<? super Aircraft> action) {
+    if (index >= fence) return false;
+    int i = index++;
+    action.accept(i < jetsSize ? jets.get(i) : choppers[i - jetsSize]);
+    return true;
+  }
+  @Override
+  public void forEachRemaining(Consumer<? super Aircraft> action) {
+    int i = index, jetsFence = Math.min(fence, jetsSize);
+    index = fence;
+    for (; i < jetsFence; i++) action.accept(jets.get(i)); // no store check inside the loops
+    for (; i < fence; i++) action.accept(choppers[i - jetsSize]);
+  }
+  @Override
+  public Spliterator<Aircraft> trySplit() { // halves are exact, both stores can end up in either half
+    int mid = (index + fence) >>> 1;
+    if (mid <= index) return null;
+    Spliterator<Aircraft> prefix = new AirForceSpliterator(jets, choppers, index, mid, jetsSize);
+    index = mid;
+    return prefix;
+  }
+  @Override public long estimateSize() { return fence - index; }
+  @Override public int characteristics() { return ORDERED | SIZED | SUBSIZED | NONNULL; }
+}
+
+// 3. Aggregate partitioned by concrete type (one growable array per type)
+class TypedAirForce {
+  private final Map<Class<?>, Partition> partitions = new LinkedHashMap<>();
+  public void add(Aircraft aircraft) { partitions.computeIfAbsent(aircraft.getClass(), type -> new Partition()).add(aircraft); }
+  public Iterator createAircraftIterator() { return createIterator(Aircraft.class); }
+  public Iterator createJetsIterator() { return createIterator(Jet.class); }
+  public Iterator createIterator(Class<? extends Aircraft> type) { // 4. Concrete Aggregate
+    List<Partition> matching = new ArrayList<>();
+    for (Map.Entry<Class<?>, Partition> partition : partitions.entrySet()) if (type.isAssignableFrom(partition.getKey())) matching.add(partition.getValue());
+    return new PartitionIterator(matching.toArray(new Partition[0]));
+  }
+  static final class Partition {
+    Aircraft[] elements = new Aircraft[8]; // read directly by PartitionIterator
+    int size;
+    void add(Aircraft aircraft) {
+      if (size == elements.length) elements = Arrays.copyOf(elements, size << 1);
+      elements[size++] = aircraft;
+    }
+  }
+}
+
+// 2. Concrete Iterator (walks the matching partitions only, bulk fetches copy whole chunks)
+class PartitionIterator implements Iterator {
+  private final TypedAirForce.Partition[] partitions;
+  private int partitionIndex;
+  private int index;
+  public PartitionIterator(TypedAirForce.Partition[] partitions) { this.partitions = partitions; }
+  @Override
+  public Aircraft next() {
+    if (!hasNext()) throw new NoSuchElementException("No more elements");
+    return partitions[partitionIndex].elements[index++];
+  }
+  @Override
+  public boolean hasNext() {
+    while (partitionIndex < partitions.length && index >= partitions[partitionIndex].size) { // skip exhausted partitions
+      partitionIndex++;
+      index = 0;
+    }
+    return partitionIndex < partitions.length;
+  }
+  @Override
+  public int next(Aircraft[] buffer) {
+    int count = 0;
+    while (count < buffer.length && hasNext()) {
+      TypedAirForce.Partition partition = partitions[partitionIndex];
+      int chunk = Math.min(buffer.length - count, partition.size - index);
+      System.arraycopy(partition.elements, index, buffer, count, chunk);
+      index += chunk;
+      count += chunk;
+    }
+    return count;
+  }
+  @Override
+  public void forEachRemaining(Consumer<? super Aircraft> action) {
+    for (; partitionIndex < partitions.length; partitionIndex++, index = 0) {
+      TypedAirForce.Partition partition = partitions[partitionIndex];
+      Aircraft[] elements = partition.elements;
+      for (int size = partition.size; index < size; index++) action.accept(elements[index]);
+    }
+  }
+}
@@ -1,11 +1,15 @@
 package com.downvoteit.javadesignpatterns.behavioral.observer.pull;
 
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Observer pattern - Pull model
  *
+ * Implementations
+ * 1. Versioned subject (observers pull only the changes made since the last version they have seen)
+ *
  */
 
 // 5. Client
@@ -21,6 +25,14 @@ public class ObserverPattern {
     f16B.land();
     f16C.land();
     controlTower.notifyObservers(3); // 2 subscribers notified
+    VersionedControlTower versionedControlTower = new VersionedControlTower(8);
+    VersionedF16 f16E = new VersionedF16("E", versionedControlTower);
+    versionedControlTower.publish(4);
+    versionedControlTower.publish(5);
+    versionedControlTower.notifyObservers(); // E pulls 4 and 5
+    f16E.update(); // nothing new, skipped
+    for (int state = 6; state <= 20; state++) versionedControlTower.publish(state);
+    f16E.update(); // E pulls the last 8 changes (13 to 20), older ones are gone from the history
   }
 }
 
@@ -48,6 +60,53 @@ class ControlTower implements Subject {
   public Integer getState() { return state; }
 }
 
+// 3. Concrete Subject (primitive state with a version and a small history, one publishing thread)
+class VersionedControlTower implements Subject {
+  private final List<Observer> observers = new ArrayList<>();
+  private final int[] history; // state of version v is in slot v & mask, the slot of version + 1 may be in the middle of a write
+  private final int mask;
+  private volatile long version; // written after the slot, readers validate against it (seqlock)
+  public VersionedControlTower(int historySize) {
+    if (historySize < 2) throw new IllegalArgumentException("historySize must be at least 2");
+    if (historySize > 1 << 29) throw new IllegalArgumentException("historySize is too large");
+    this.history = new int[Integer.highestOneBit(historySize) << 1]; // one spare slot for the next version
+    this.mask = history.length - 1;
+  }
+  @Override public void addObserver(Observer observer) { observers.add(observer); }
+  @Override public void removeObserver(Observer observer) { observers.remove(observer); }
+  @Override public void notifyObservers(Integer state) {
+    publish(state);
+    notifyObservers();
+  }
+  public void notifyObservers() { for (Observer observer : observers) observer.update(); }
+  public void publish(int state) { // no allocation, no boxing
+    long next = version + 1;
+    history[(int) next & mask] = state;
+    version = next;
+  }
+  public long getVersion() { return version; }
+  @Override public Integer getState() { return getStateAsInt(); }
+  public int getStateAsInt() {
+    while (true) {
+      long current = version;
+      int state = history[(int) current & mask];
+      VarHandle.acquireFence(); // the slot read cannot move below the version re-read
+      if (version - current < history.length - 1) return state; // slot was not overwritten while reading
+    }
+  }
+  // Copies the states of versions (since, until] into the buffer (oldest first, at most the history or buffer size) and returns their number
+  public int changesSince(long since, long until, int[] buffer) {
+    while (true) {
+      long from = Math.max(Math.max(since, until - buffer.length), version - history.length + 1); // older slots are overwritten already
+      int count = (int) Math.max(0, until - from);
+      for (int i = 0; i < count; i++) buffer[i] = history[(int) (from + 1 + i) & mask];
+      VarHandle.acquireFence(); // the slot reads cannot move below the version re-read
+      if (version - (from + 1) < history.length - 1) return count; // oldest copied slot was not overwritten while copying
+    }
+  }
+  public int changesSince(long since, int[] buffer) { return changesSince(since, version, buffer); }
+}
+
 interface Aircraft {
   void fly();
   void land();
@@ -66,3 +125,26 @@ class F16 implements Observer, Aircraft {
   @Override public void fly() {}
   @Override public void land() { observable.removeObserver(this); } // unsubscribe
 }
+
+// 4. Concrete Observer (remembers the last seen version and skips the pull when nothing changed)
+class VersionedF16 implements Observer, Aircraft {
+  private final String name;
+  private final VersionedControlTower observable;
+  private final int[] changes = new int[8]; // reused for every pull
+  private long seenVersion;
+  public VersionedF16(String name, VersionedControlTower observable) {
+    this.name = name;
+    this.observable = observable;
+    observable.addObserver(this);
+  }
+  @Override
+  public void update() {
+    long version = observable.getVersion();
+    if (version == seenVersion) return; // nothing new
+    int count = observable.changesSince(seenVersion, version, changes);
+    seenVersion = version;
+    for (int i = 0; i < count; i++) System.out.println(changes[i] + "-" + name);
+  }
+  @Override public void fly() {}
+  @Override public void land() { observable.removeObserver(this); } // unsubscribe
+}
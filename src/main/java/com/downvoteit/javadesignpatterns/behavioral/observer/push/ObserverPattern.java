@@ -2,6 +2,14 @@ package com.downvoteit.javadesignpatterns.behavioral.observer.push;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Observer pattern - Push model
@@ -24,6 +32,8 @@ import java.util.List;
  * Implementations
  * 1. Push model (top-down, push from the subject to the observer)
  * 2. Pull model (bottom-up, pull from the subject to the observer)
+ * 3. Thread-safe subject (observers can subscribe and unsubscribe while being notified)
+ * 4. Change Manager that coalesces rapid updates into one delivery per count or time window
  *
  * Examples in JDK
  * 1. java.util.EventListener
@@ -43,6 +53,17 @@ public class ObserverPattern {
     f16B.land();
     f16C.land();
     controlTower.notifyObservers(3); // 2 subscribers notified
+    ConcurrentControlTower concurrentControlTower = new ConcurrentControlTower();
+    F16 f16E = new F16("E", concurrentControlTower);
+    F16 f16F = new F16("F", concurrentControlTower);
+    concurrentControlTower.notifyObservers(4); // 2 subscribers notified
+    f16E.land(); // safe even from another thread or from inside update()
+    concurrentControlTower.notifyObservers(5); // 1 subscriber notified
+    ControlTower busyControlTower = new ControlTower();
+    try (ChangeManager changeManager = new ChangeManager(busyControlTower, 1000, 100, TimeUnit.MILLISECONDS)) {
+      F16 f16G = new F16("G", changeManager); // subscribes to the change manager instead of the tower
+      for (int state = 1; state <= 2500; state++) busyControlTower.notifyObservers(state); // 2 deliveries (1000, 2000)
+    } // 1 final delivery (2500) on close
   }
 }
 
@@ -68,6 +89,114 @@ class ControlTower implements Subject {
   }
 }
 
+// 3. Concrete Subject (thread-safe, notifies a snapshot of the observers without taking locks)
+class ConcurrentControlTower implements Subject {
+  private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+  private final ConcurrentMap<Observer, Subscription> subscriptions = new ConcurrentHashMap<>(); // O(1) add and remove
+  private final AtomicLong version = new AtomicLong(); // incremented after every add/remove
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(0, NO_SUBSCRIPTIONS));
+  private volatile Integer state;
+  @Override
+  public void addObserver(Observer observer) {
+    if (subscriptions.putIfAbsent(observer, new Subscription(observer)) == null) version.incrementAndGet();
+  }
+  @Override
+  public void removeObserver(Observer observer) {
+    Subscription subscription = subscriptions.remove(observer);
+    if (subscription == null) return;
+    subscription.active = false; // skipped by snapshots that still hold it
+    version.incrementAndGet();
+  }
+  @Override
+  public void notifyObservers(Integer state) {
+    this.state = state;
+    for (Subscription subscription : snapshot()) if (subscription.active) subscription.observer.update(state);
+  }
+  public int countObservers() { return subscriptions.size(); }
+  private Subscription[] snapshot() { // rebuilt at most once per batch of subscription changes
+    Snapshot current = snapshot.get();
+    long latest = version.get();
+    if (current.version == latest) return current.subscriptions;
+    Snapshot rebuilt = new Snapshot(latest, subscriptions.values().toArray(NO_SUBSCRIPTIONS)); // sees every change counted in latest
+    while (current.version < latest && !snapshot.compareAndSet(current, rebuilt)) current = snapshot.get(); // never replace a newer one
+    return rebuilt.subscriptions;
+  }
+  private static final class Subscription {
+    private final Observer observer;
+    private volatile boolean active = true;
+    Subscription(Observer observer) { this.observer = observer; }
+  }
+  private static final class Snapshot {
+    private final long version;
+    private final Subscription[] subscriptions;
+    Snapshot(long version, Subscription[] subscriptions) {
+      this.version = version;
+      this.subscriptions = subscriptions;
+    }
+  }
+}
+
+// Change Manager (sits between the subject and the observers, delivers only the latest state once per window)
+// Any number of threads can publish, every publish gets its own sequence so the latest state is never lost
+class ChangeManager implements Subject, Observer, AutoCloseable {
+  private final Subject subject;
+  private final Subject observers = new ConcurrentControlTower();
+  private final int maxBatch;
+  private final AtomicLong published = new AtomicLong(); // sequence (high 32 bits) and latest state (low 32 bits), publishing never allocates or boxes
+  private volatile int delivered; // sequence covered by the last delivery
+  private final AtomicBoolean delivering = new AtomicBoolean();
+  private final ScheduledExecutorService scheduler;
+  public ChangeManager(Subject subject, int maxBatch) { this(subject, maxBatch, 0, TimeUnit.MILLISECONDS); } // count window only
+  public ChangeManager(Subject subject, int maxBatch, long window, TimeUnit unit) {
+    if (maxBatch < 1) throw new IllegalArgumentException("maxBatch must be positive");
+    this.subject = subject;
+    this.maxBatch = maxBatch; // any positive int, only the latest state is kept so memory does not grow with the window
+    if (window > 0) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "change-manager");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.scheduleAtFixedRate(this::flush, window, window, unit); // time window
+    } else scheduler = null;
+    subject.addObserver(this);
+  }
+  @Override public void addObserver(Observer observer) { observers.addObserver(observer); }
+  @Override public void removeObserver(Observer observer) { observers.removeObserver(observer); }
+  @Override public void notifyObservers(Integer state) { publish(state); }
+  @Override public void update(Object newState) { publish((Integer) newState); } // called by the subject
+  public void publish(int state) {
+    long current;
+    int sequence;
+    do { // no allocation, retried only when another thread published in between
+      current = published.get();
+      sequence = (int) (current >>> 32) + 1; // wraps around, only differences are used
+    } while (!published.compareAndSet(current, (long) sequence << 32 | (state & 0xFFFFFFFFL))); // sequence and state are read together
+    if (Integer.toUnsignedLong(sequence - delivered) >= maxBatch) flush(); // count window
+  }
+  public void flush() {
+    if (!delivering.compareAndSet(false, true)) return; // the other side is delivering already
+    try {
+      long latest = published.get();
+      int sequence = (int) (latest >>> 32);
+      if (sequence == delivered) return; // nothing new
+      delivered = sequence;
+      observers.notifyObservers((int) latest);
+    } finally {
+      delivering.set(false);
+    }
+  }
+  @Override
+  public void close() {
+    subject.removeObserver(this);
+    if (scheduler != null) scheduler.shutdown();
+    while ((int) (published.get() >>> 32) != delivered) { // retry while a scheduled flush is still running
+      flush();
+      Thread.onSpinWait();
+    }
+  }
+}
+
 interface Aircraft {
   void fly();
   void land();
@@ -1,5 +1,9 @@
 package com.downvoteit.javadesignpatterns.behavioral.strategy;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Strategy pattern
  *
@@ -18,6 +22,7 @@ package com.downvoteit.javadesignpatterns.behavioral.strategy;
  *
  * Implementations
  * 1. Flyweight optimization
+ * 2. Default strategy selected by the context (input size and available cores)
  *
  * Examples in JDK
  * 1. java.util.Comparator
@@ -35,6 +40,11 @@ public class StrategyPattern {
       context.sort(numsOne);
       context.setSortAlgorithm(mergeSort);
       context.sort(numsTwo);
+      int[] numsThree = new int[1 << 20];
+      for (int i = 0; i < numsThree.length; i++) numsThree[i] = numsThree.length - i;
+      Context adaptiveContext = new Context(); // picks a strategy per call
+      adaptiveContext.sort(numsThree);
+      System.out.println(Arrays.toString(numsOne) + " " + Arrays.toString(numsTwo) + " " + numsThree[0]);
   }
 }
 
@@ -42,13 +52,192 @@ public class StrategyPattern {
 interface Sort { void sort(int[] nums); }
 
 // 2. Concrete Strategy
-class BubbleSort implements Sort { @Override public void sort(int[] nums) {} }
-class MergeSort implements Sort { @Override public void sort(int[] nums) {} }
+class BubbleSort implements Sort {
+  @Override
+  public void sort(int[] nums) {
+    for (int end = nums.length - 1; end > 0; end--) {
+      boolean swapped = false;
+      for (int i = 0; i < end; i++) {
+        if (nums[i] > nums[i + 1]) {
+          int tmp = nums[i];
+          nums[i] = nums[i + 1];
+          nums[i + 1] = tmp;
+          swapped = true;
+        }
+      }
+      if (!swapped) return; // already sorted
+    }
+  }
+}
+
+class MergeSort implements Sort {
+  static final int INSERTION_CUTOFF = 32;
+  @Override
+  public void sort(int[] nums) {
+    if (nums.length < 2) return;
+    sort(nums, new int[nums.length], 0, nums.length); // one buffer for the whole run
+  }
+  static void sort(int[] nums, int[] buffer, int from, int to) { // [from, to)
+    if (to - from <= INSERTION_CUTOFF) {
+      insertionSort(nums, from, to);
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    sort(nums, buffer, from, mid);
+    sort(nums, buffer, mid, to);
+    merge(nums, buffer, from, mid, to);
+  }
+  static void merge(int[] nums, int[] buffer, int from, int mid, int to) {
+    if (nums[mid - 1] <= nums[mid]) return; // halves already in order
+    System.arraycopy(nums, from, buffer, from, mid - from);
+    int left = from, right = mid, out = from;
+    while (left < mid && right < to) nums[out++] = buffer[left] <= nums[right] ? buffer[left++] : nums[right++];
+    while (left < mid) nums[out++] = buffer[left++]; // the rest of the right half is already in place
+  }
+  static void insertionSort(int[] nums, int from, int to) {
+    for (int i = from + 1; i < to; i++) {
+      int key = nums[i];
+      int j = i - 1;
+      while (j >= from && nums[j] > key) nums[j + 1] = nums[j--];
+      nums[j + 1] = key;
+    }
+  }
+}
+
+// Fork/join merge sort (halves are sorted by different workers, merged by the forking worker)
+class ParallelMergeSort implements Sort {
+  static final int SEQUENTIAL_CUTOFF = 1 << 13;
+  private final ForkJoinPool pool;
+  public ParallelMergeSort() { this(ForkJoinPool.commonPool()); }
+  public ParallelMergeSort(ForkJoinPool pool) { this.pool = pool; }
+  @Override
+  public void sort(int[] nums) {
+    if (nums.length <= SEQUENTIAL_CUTOFF) {
+      new MergeSort().sort(nums);
+      return;
+    }
+    pool.invoke(new SortTask(nums, new int[nums.length], 0, nums.length));
+  }
+  private static class SortTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final int[] nums;
+    private final int[] buffer;
+    private final int from;
+    private final int to;
+    SortTask(int[] nums, int[] buffer, int from, int to) {
+      this.nums = nums;
+      this.buffer = buffer;
+      this.from = from;
+      this.to = to;
+    }
+    @Override
+    protected void compute() {
+      if (to - from <= SEQUENTIAL_CUTOFF) {
+        MergeSort.sort(nums, buffer, from, to);
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new SortTask(nums, buffer, from, mid), new SortTask(nums, buffer, mid, to)); // disjoint ranges of the shared buffer
+      MergeSort.merge(nums, buffer, from, mid, to);
+    }
+  }
+}
+
+// LSD radix sort (4 passes of 8 bits, not comparison based)
+class RadixSort implements Sort {
+  private static final int RADIX = 256;
+  @Override
+  public void sort(int[] nums) {
+    int n = nums.length;
+    if (n < 2) return;
+    int[] src = nums, dst = new int[n];
+    int[] counts = new int[RADIX];
+    for (int shift = 0; shift < Integer.SIZE; shift += 8) {
+      Arrays.fill(counts, 0);
+      for (int num : src) counts[digit(num, shift)]++;
+      if (counts[digit(src[0], shift)] == n) continue; // every key has the same digit, pass is a no-op
+      for (int i = 0, sum = 0; i < RADIX; i++) {
+        int count = counts[i];
+        counts[i] = sum; // counts become start offsets
+        sum += count;
+      }
+      for (int num : src) dst[counts[digit(num, shift)]++] = num;
+      int[] tmp = src;
+      src = dst;
+      dst = tmp;
+    }
+    if (src != nums) System.arraycopy(src, 0, nums, 0, n);
+  }
+  private static int digit(int num, int shift) { return ((num ^ Integer.MIN_VALUE) >>> shift) & (RADIX - 1); } // sign bit flipped so negatives come first
+}
+
+// In-place dual-pivot quicksort (Yaroslavskiy)
+class DualPivotQuickSort implements Sort {
+  @Override public void sort(int[] nums) { sort(nums, 0, nums.length - 1); }
+  private static void sort(int[] nums, int left, int right) { // [left, right]
+    while (right - left >= MergeSort.INSERTION_CUTOFF) {
+      int third = (right - left) / 3;
+      swap(nums, left, left + third); // tertiles as pivots keep sorted and reversed input balanced
+      swap(nums, right, right - third);
+      if (nums[left] > nums[right]) swap(nums, left, right);
+      int pivotOne = nums[left], pivotTwo = nums[right];
+      int less = left + 1, great = right - 1;
+      for (int k = less; k <= great; k++) {
+        if (nums[k] < pivotOne) swap(nums, k, less++);
+        else if (nums[k] > pivotTwo) {
+          while (k < great && nums[great] > pivotTwo) great--;
+          swap(nums, k, great--);
+          if (nums[k] < pivotOne) swap(nums, k, less++);
+        }
+      }
+      swap(nums, left, --less);
+      swap(nums, right, ++great);
+      int middleTo = pivotOne != pivotTwo ? great - 1 : less; // middle part is all equal otherwise
+      // recurse into the two smaller parts and loop on the largest one (stack depth stays logarithmic)
+      int leftSize = less - left, middleSize = middleTo - less, rightSize = right - great;
+      if (leftSize >= middleSize && leftSize >= rightSize) {
+        sort(nums, less + 1, middleTo);
+        sort(nums, great + 1, right);
+        right = less - 1;
+      } else if (middleSize >= rightSize) {
+        sort(nums, left, less - 1);
+        sort(nums, great + 1, right);
+        left = less + 1;
+        right = middleTo;
+      } else {
+        sort(nums, left, less - 1);
+        sort(nums, less + 1, middleTo);
+        left = great + 1;
+      }
+    }
+    MergeSort.insertionSort(nums, left, right + 1);
+  }
+  private static void swap(int[] nums, int i, int j) {
+    int tmp = nums[i];
+    nums[i] = nums[j];
+    nums[j] = tmp;
+  }
+}
 
 // 3. Context
 class Context {
+  // Strategies are stateless and shared (flyweight)
+  private static final Sort BUBBLE_SORT = new BubbleSort();
+  private static final Sort QUICK_SORT = new DualPivotQuickSort();
+  private static final Sort RADIX_SORT = new RadixSort();
+  private static final Sort PARALLEL_MERGE_SORT = new ParallelMergeSort();
+  static final int SMALL_SIZE = 16;
+  static final int RADIX_SIZE = 1 << 12;
+  static final int PARALLEL_SIZE = 1 << 20;
   private Sort sortAlgorithm;
+  public Context() {} // no strategy, selected per call
   public Context(Sort sortAlgorithm) { this.sortAlgorithm = sortAlgorithm; }
-  public void sort(int[] nums) { sortAlgorithm.sort(nums); }
+  public void sort(int[] nums) { (sortAlgorithm != null ? sortAlgorithm : selectSortAlgorithm(nums.length)).sort(nums); }
   public void setSortAlgorithm(Sort sortAlgorithm) { this.sortAlgorithm = sortAlgorithm; } // change algorithm in runtime
+  static Sort selectSortAlgorithm(int size) {
+    if (size <= SMALL_SIZE) return BUBBLE_SORT;
+    if (size < RADIX_SIZE) return QUICK_SORT;
+    if (size >= PARALLEL_SIZE && Runtime.getRuntime().availableProcessors() > 1) return PARALLEL_MERGE_SORT;
+    return RADIX_SORT;
+  }
 }
@@ -3,6 +3,10 @@ package com.downvoteit.javadesignpatterns.behavioral.visitor;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * Visitor pattern
@@ -23,6 +27,8 @@ import java.util.List;
  * 5. Object Structure
  *
  * Implementations
+ * 1. Parallel visit (one visitor per worker thread, partial results merged like a java.util.stream.Collector)
+ * 2. Composite visitor (many visitors served by a single traversal and a single dispatch per element)
  *
  * Examples in JDK
  * 1. java.nio.file.FileVisitor interface and java.nio.file.SimpleFileVisitor class
@@ -47,6 +53,22 @@ public class VisitorPattern {
     // Output the result of their interaction with the underlying objects
     metricsVisitor.printAccumulatedResults(); // 3 + 4 = 7
     priceVisitor.printAccumulatedResults(); // 15 * 3 + 20 * 2 = 85
+    // Pass a visitor per worker, then merge the partial results
+    List<Aircraft> fleet = new ArrayList<>();
+    for (int i = 0; i < 1_000_000; i++) fleet.add(i % 2 == 0 ? new F16() : new Boeing747());
+    AirForce largeAirForce = new AirForce(fleet);
+    AircraftPriceVisitor parallelPriceVisitor = largeAirForce.acceptParallel(AircraftPriceVisitor::new, AircraftPriceVisitor::merge);
+    parallelPriceVisitor.printAccumulatedResults(); // 15 * 500000 + 20 * 500000 = 17500000
+    // Pass all visitors in one traversal
+    AircraftMetricsVisitor fusedMetricsVisitor = new AircraftMetricsVisitor();
+    AircraftPriceVisitor fusedPriceVisitor = new AircraftPriceVisitor();
+    AircraftFuelVisitor fusedFuelVisitor = new AircraftFuelVisitor();
+    AircraftMaintenanceVisitor fusedMaintenanceVisitor = new AircraftMaintenanceVisitor();
+    airForce.accept(List.of(fusedMetricsVisitor, fusedPriceVisitor, fusedFuelVisitor, fusedMaintenanceVisitor));
+    fusedMetricsVisitor.printAccumulatedResults(); // 7
+    fusedPriceVisitor.printAccumulatedResults(); // 85
+    fusedFuelVisitor.printAccumulatedResults(); // 3 * 3 + 2 * 60 = 129
+    fusedMaintenanceVisitor.printAccumulatedResults(); // 3 * 12 + 2 * 40 = 116
   }
 }
 
@@ -62,6 +84,8 @@ class AircraftMetricsVisitor implements AircraftVisitor {
   @Override public void visitF16(F16 f16) { metrics += 1; }
   @Override public void visitBoeing747(Boeing747 boeing747) { metrics += 2; }
   public void printAccumulatedResults() { System.out.println("Metrics: " + metrics); } // new operation
+  public double getMetrics() { return metrics; }
+  public void merge(AircraftMetricsVisitor other) { metrics += other.metrics; } // combiner for parallel visits
 }
 
 class AircraftPriceVisitor implements AircraftVisitor {
@@ -69,6 +93,30 @@ class AircraftPriceVisitor implements AircraftVisitor {
   @Override public void visitF16(F16 f16) { price += 15; }
   @Override public void visitBoeing747(Boeing747 boeing747) { price += 20; }
   public void printAccumulatedResults() {System.out.println("Metrics: " + price); } // new operation
+  public double getPrice() { return price; }
+  public void merge(AircraftPriceVisitor other) { price += other.price; } // combiner for parallel visits
+}
+
+class AircraftFuelVisitor implements AircraftVisitor {
+  private double fuel;
+  @Override public void visitF16(F16 f16) { fuel += 3; }
+  @Override public void visitBoeing747(Boeing747 boeing747) { fuel += 60; }
+  public void printAccumulatedResults() { System.out.println("Fuel: " + fuel); } // new operation
+}
+
+class AircraftMaintenanceVisitor implements AircraftVisitor {
+  private double hours;
+  @Override public void visitF16(F16 f16) { hours += 12; }
+  @Override public void visitBoeing747(Boeing747 boeing747) { hours += 40; }
+  public void printAccumulatedResults() { System.out.println("Maintenance: " + hours); } // new operation
+}
+
+// Fans one dispatch out to many visitors (the element type is resolved once for all of them)
+class CompositeAircraftVisitor implements AircraftVisitor {
+  private final AircraftVisitor[] visitors;
+  public CompositeAircraftVisitor(List<? extends AircraftVisitor> visitors) { this.visitors = visitors.toArray(new AircraftVisitor[0]); }
+  @Override public void visitF16(F16 f16) { for (AircraftVisitor visitor : visitors) visitor.visitF16(f16); }
+  @Override public void visitBoeing747(Boeing747 boeing747) { for (AircraftVisitor visitor : visitors) visitor.visitBoeing747(boeing747); }
 }
 
 // 3. Element
@@ -79,13 +127,57 @@ class F16 implements Aircraft { @Override public void accept(AircraftVisitor vis
 class Boeing747 implements Aircraft { @Override public void accept(AircraftVisitor visitor) { visitor.visitBoeing747(this); } }
 
 class AirForce {
-  private final List<Aircraft> planes = new ArrayList<>();
+  private final List<Aircraft> planes;
   public AirForce() {
+    planes = new ArrayList<>();
     planes.add(new F16());
     planes.add(new F16());
     planes.add(new F16());
     planes.add(new Boeing747());
     planes.add(new Boeing747());
   }
+  public AirForce(List<Aircraft> planes) { this.planes = new ArrayList<>(planes); } // own random access copy, parallel visits index into it
   public Iterator<Aircraft> getIterator() { return planes.iterator(); }
+  public void accept(List<? extends AircraftVisitor> visitors) { // single pass for any number of visitors
+    AircraftVisitor visitor = visitors.size() == 1 ? visitors.get(0) : new CompositeAircraftVisitor(visitors);
+    for (Aircraft aircraft : planes) aircraft.accept(visitor);
+  }
+  // Visitors are not thread-safe, so every worker gets its own from the supplier and the combiner merges them (like a Collector)
+  public <V extends AircraftVisitor> V acceptParallel(Supplier<V> supplier, BiConsumer<V, V> combiner) {
+    return acceptParallel(supplier, combiner, ForkJoinPool.commonPool());
+  }
+  public <V extends AircraftVisitor> V acceptParallel(Supplier<V> supplier, BiConsumer<V, V> combiner, ForkJoinPool pool) {
+    return pool.invoke(new VisitTask<>(planes, 0, planes.size(), supplier, combiner));
+  }
+  private static class VisitTask<V extends AircraftVisitor> extends RecursiveTask<V> {
+    private static final long serialVersionUID = 1L;
+    static final int SEQUENTIAL_CUTOFF = 1 << 13;
+    private final List<Aircraft> planes;
+    private final int from;
+    private final int to;
+    private final Supplier<V> supplier;
+    private final BiConsumer<V, V> combiner;
+    VisitTask(List<Aircraft> planes, int from, int to, Supplier<V> supplier, BiConsumer<V, V> combiner) {
+      this.planes = planes;
+      this.from = from;
+      this.to = to;
+      this.supplier = supplier;
+      this.combiner = combiner;
+    }
+    @Override
+    protected V compute() {
+      if (to - from <= SEQUENTIAL_CUTOFF) {
+        V visitor = supplier.get(); // accumulator owned by this worker
+        for (int i = from; i < to; i++) planes.get(i).accept(visitor);
+        return visitor;
+      }
+      int mid = (from + to) >>> 1;
+      VisitTask<V> left = new VisitTask<>(planes, from, mid, supplier, combiner);
+      left.fork();
+      V right = new VisitTask<>(planes, mid, to, supplier, combiner).compute();
+      V result = left.join();
+      combiner.accept(result, right); // left then right keeps the encounter order for order-sensitive visitors
+      return result;
+    }
+  }
 }
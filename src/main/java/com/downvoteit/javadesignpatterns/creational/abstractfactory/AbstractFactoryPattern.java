@@ -1,7 +1,18 @@
 package com.downvoteit.javadesignpatterns.creational.abstractfactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * Abstract Factory pattern
@@ -21,6 +32,8 @@ import java.util.List;
  *
  * Implementations
  * 1. Implement an abstract type to make a concrete factory (factory of factories) then pass it to the client
+ * 2. Caching factory wrapper (immutable products are shared by all clients, the others are created per client)
+ * 3. Staged assembly line (every product of the family is made by its own concurrent stage, the client joins them)
  *
  * Examples in JDK
  * 1. javax.xml.parsers.DocumentBuilderFactory.newInstance()
@@ -52,6 +65,26 @@ public class AbstractFactoryPattern {
       planes.add(new Aircraft(boeing747AbstractFactory));
       for (Aircraft aircraft : planes) aircraft.fly();
     }
+    { // Caching Abstract Factory (cockpit and wings are shared, every airframe gets its own engine)
+      AircraftFactory factory = new CachingAircraftFactory(new F16AbstractFactory());
+      Aircraft first = new Aircraft(factory);
+      Aircraft second = new Aircraft(factory);
+      for (int i = 0; i < 1000; i++) { // assembled on the first flight only, allocation free afterwards
+        first.fly();
+        second.fly();
+      }
+      System.out.println(first.getWings() == second.getWings()); // true
+      System.out.println(first.getEngine() == second.getEngine()); // false
+    }
+    { // Staged Abstract Factory (engines on 2 threads, cockpits and wings on 1 thread each, at most 16 batches in flight per stage)
+      try (FleetAssemblyLine line = new FleetAssemblyLine(2, 1, 1, 16)) {
+        AssembledFleet fleet = line.assemble(new F16AbstractFactory(), 1_000_000);
+        System.out.println(fleet.getAircraft().length); // 1000000
+        for (StageReport stage : fleet.getStages()) System.out.println(stage);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 }
 
@@ -75,14 +108,15 @@ class F16Naive {
 interface Engine { void start(); }
 interface Cockpit { }
 interface Wings { }
+interface Immutable { } // products without state can be shared by any number of aircraft
 
 // 4. Concrete Product
-class F16Engine implements Engine { @Override public void start() {} }
-class F16Cockpit implements Cockpit { }
-class F16Wings implements Wings { }
+class F16Engine implements Engine { @Override public void start() {} } // stateful, one per airframe
+class F16Cockpit implements Cockpit, Immutable { }
+class F16Wings implements Wings, Immutable { }
 class Boeing747Engine implements Engine { @Override public void start() {} }
-class Boeing747Cockpit implements Cockpit { }
-class Boeing747Wings implements Wings { }
+class Boeing747Cockpit implements Cockpit, Immutable { }
+class Boeing747Wings implements Wings, Immutable { }
 
 // Implementations are abstract but still exposes new keyword to the consumer
 class F16Abstracted {
@@ -136,6 +170,46 @@ class Boeing747AbstractFactory implements AircraftFactory {
   @Override public Wings createWings() { return new F16Wings(); }
 }
 
+// Wraps any concrete factory, the first product of each kind decides whether it is shared (Immutable) or created every time
+// Racing threads may each create a shared product once, which is harmless since such products have no state
+class CachingAircraftFactory implements AircraftFactory {
+  private final AircraftFactory factory;
+  private volatile Engine engine;
+  private volatile Cockpit cockpit;
+  private volatile Wings wings;
+
+  public CachingAircraftFactory(AircraftFactory factory) {
+    this.factory = factory;
+  }
+
+  @Override
+  public Engine createEngine() {
+    Engine shared = engine;
+    if (shared != null) return shared;
+    Engine created = factory.createEngine();
+    if (created instanceof Immutable) engine = created;
+    return created;
+  }
+
+  @Override
+  public Cockpit createCockpit() {
+    Cockpit shared = cockpit;
+    if (shared != null) return shared;
+    Cockpit created = factory.createCockpit();
+    if (created instanceof Immutable) cockpit = created;
+    return created;
+  }
+
+  @Override
+  public Wings createWings() {
+    Wings shared = wings;
+    if (shared != null) return shared;
+    Wings created = factory.createWings();
+    if (created instanceof Immutable) wings = created;
+    return created;
+  }
+}
+
 // 5. Client (end-user of the factory)
 class Aircraft {
   private final AircraftFactory factory;
@@ -147,15 +221,183 @@ class Aircraft {
     this.factory = factory;
   }
 
-  public Aircraft makeAircraft() {
-    engine = factory.createEngine();
+  Aircraft(Engine engine, Cockpit cockpit, Wings wings) { // already assembled (e.g. by FleetAssemblyLine)
+    this.factory = null;
+    this.engine = engine;
+    this.cockpit = cockpit;
+    this.wings = wings;
+  }
+
+  public Aircraft makeAircraft() { // assembled once per airframe, later calls return the same parts
+    if (engine != null) return this;
     cockpit = factory.createCockpit();
     wings = factory.createWings();
+    engine = factory.createEngine(); // last, marks the airframe as assembled
     return this;
   }
 
+  public Engine getEngine() { return engine; }
+  public Cockpit getCockpit() { return cockpit; }
+  public Wings getWings() { return wings; }
+
   public void fly() {
     Aircraft aircraft = makeAircraft();
     aircraft.engine.start();
   }
 }
+
+// Staged assembly line, engines, cockpits and wings are made by separate stages running concurrently
+// Stages hand over batches through bounded queues (a full queue blocks its stage), the calling thread assembles the aircraft
+class FleetAssemblyLine implements AutoCloseable {
+  static final int BATCH = 256; // components per queue hand-over
+  private final int engineThreads;
+  private final int cockpitThreads;
+  private final int wingsThreads;
+  private final int queueCapacity; // batches per queue
+  private final ExecutorService workers;
+
+  public FleetAssemblyLine(int engineThreads, int cockpitThreads, int wingsThreads, int queueCapacity) {
+    if (engineThreads < 1 || cockpitThreads < 1 || wingsThreads < 1) throw new IllegalArgumentException("Every stage needs a thread");
+    if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be positive");
+    this.engineThreads = engineThreads;
+    this.cockpitThreads = cockpitThreads;
+    this.wingsThreads = wingsThreads;
+    this.queueCapacity = queueCapacity;
+    this.workers = Executors.newFixedThreadPool(engineThreads + cockpitThreads + wingsThreads, runnable -> {
+      Thread thread = new Thread(runnable, "fleet-assembly");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public AssembledFleet assemble(AircraftFactory factory, int count) throws InterruptedException {
+    if (count < 0) throw new IllegalArgumentException("count must not be negative");
+    Thread assembler = Thread.currentThread();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Stage engines = new Stage("engine", engineThreads, count, factory::createEngine);
+    Stage cockpits = new Stage("cockpit", cockpitThreads, count, factory::createCockpit);
+    Stage wings = new Stage("wings", wingsThreads, count, factory::createWings);
+    List<Future<?>> running = new ArrayList<>();
+    try {
+      for (Stage stage : List.of(engines, cockpits, wings))
+        for (int i = 0; i < stage.threads; i++) running.add(workers.submit(() -> stage.run(failure, assembler)));
+      long started = System.nanoTime();
+      Cursor engine = new Cursor(engines.queue), cockpit = new Cursor(cockpits.queue), wing = new Cursor(wings.queue);
+      Aircraft[] aircraft = new Aircraft[count];
+      for (int i = 0; i < count; i++) aircraft[i] = new Aircraft((Engine) engine.next(), (Cockpit) cockpit.next(), (Wings) wing.next());
+      long blocked = engine.blockedNanos + cockpit.blockedNanos + wing.blockedNanos;
+      StageReport assembly = new StageReport("assembly", 1, count, System.nanoTime() - started, blocked);
+      return new AssembledFleet(aircraft, List.of(engines.report(), cockpits.report(), wings.report(), assembly));
+    } catch (InterruptedException e) {
+      Throwable cause = failure.get();
+      if (cause == null) throw e;
+      throw new IllegalStateException("Fleet assembly failed", cause);
+    } finally {
+      for (Future<?> worker : running) worker.cancel(true); // no-op unless assembly failed or was interrupted
+    }
+  }
+
+  @Override public void close() { workers.shutdownNow(); }
+
+  // One product of the family, its threads claim batches until the fleet is covered
+  private final class Stage {
+    private final String name;
+    private final int threads;
+    private final int count;
+    private final Supplier<Object> product;
+    private final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<>(queueCapacity);
+    private final AtomicInteger claimed = new AtomicInteger();
+    private final LongAdder blockedNanos = new LongAdder(); // time spent waiting for room in the queue (backpressure)
+    private final LongAccumulator startedAt = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator finishedAt = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    Stage(String name, int threads, int count, Supplier<Object> product) {
+      this.name = name;
+      this.threads = threads;
+      this.count = count;
+      this.product = product;
+    }
+
+    void run(AtomicReference<Throwable> failure, Thread assembler) {
+      startedAt.accumulate(System.nanoTime());
+      try {
+        for (int from; (from = claimed.getAndAdd(BATCH)) < count; ) {
+          Object[] batch = new Object[Math.min(BATCH, count - from)];
+          for (int i = 0; i < batch.length; i++) batch[i] = product.get();
+          long waiting = System.nanoTime();
+          queue.put(batch);
+          blockedNanos.add(System.nanoTime() - waiting);
+        }
+      } catch (InterruptedException e) {
+        // cancelled by the assembler
+      } catch (RuntimeException | Error e) {
+        if (failure.compareAndSet(null, e)) assembler.interrupt(); // wakes the assembler waiting on any queue
+      } finally {
+        finishedAt.accumulate(System.nanoTime());
+      }
+    }
+
+    StageReport report() { return new StageReport(name, threads, count, Math.max(0, finishedAt.get() - startedAt.get()), blockedNanos.sum()); }
+  }
+
+  // Reads the batches of one stage element by element (batches of different stages arrive in any order)
+  private static final class Cursor {
+    private final BlockingQueue<Object[]> queue;
+    private Object[] batch = new Object[0];
+    private int index;
+    private long blockedNanos; // time spent waiting for the stage
+
+    Cursor(BlockingQueue<Object[]> queue) { this.queue = queue; }
+
+    Object next() throws InterruptedException {
+      if (index == batch.length) {
+        long waiting = System.nanoTime();
+        batch = queue.take();
+        blockedNanos += System.nanoTime() - waiting;
+        index = 0;
+      }
+      return batch[index++];
+    }
+  }
+}
+
+class AssembledFleet {
+  private final Aircraft[] aircraft;
+  private final List<StageReport> stages;
+
+  public AssembledFleet(Aircraft[] aircraft, List<StageReport> stages) {
+    this.aircraft = aircraft;
+    this.stages = Collections.unmodifiableList(stages);
+  }
+
+  public Aircraft[] getAircraft() { return aircraft; }
+  public List<StageReport> getStages() { return stages; }
+}
+
+class StageReport {
+  private final String stage;
+  private final int threads;
+  private final long items;
+  private final long elapsedNanos; // first thread started to last thread finished
+  private final long blockedNanos; // summed over the threads of the stage
+
+  public StageReport(String stage, int threads, long items, long elapsedNanos, long blockedNanos) {
+    this.stage = stage;
+    this.threads = threads;
+    this.items = items;
+    this.elapsedNanos = elapsedNanos;
+    this.blockedNanos = blockedNanos;
+  }
+
+  public String getStage() { return stage; }
+  public int getThreads() { return threads; }
+  public long getItems() { return items; }
+  public long getElapsedNanos() { return elapsedNanos; }
+  public long getBlockedNanos() { return blockedNanos; }
+  public double getThroughput() { return elapsedNanos == 0 ? 0 : items * 1e9 / elapsedNanos; } // items per second
+
+  @Override
+  public String toString() {
+    return String.format("%s x%d: %d items, %.0f items/s, blocked %d ms", stage, threads, items, getThroughput(), blockedNanos / 1_000_000);
+  }
+}
@@ -18,6 +18,7 @@ package com.downvoteit.javadesignpatterns.creational.builder;
  * Implementations
  * 1. With a director
  * 2. Without a director
+ * 3. Reusable builder (reset() starts a new product) pooled per thread
  *
  * Examples in JDK
  * 1. java.lang.StringBuilder
@@ -45,6 +46,11 @@ public class BuilderPattern {
       Aircraft aircraft = aircraftBuilder.getResult();
       aircraft.fly();
     }
+    { // Build a fleet with the builder and director pooled for the current thread
+      Aircraft[] fleet = AircraftBuilderPool.boeing747().constructBatch(1000, true);
+      Aircraft f16 = AircraftBuilderPool.f16().build(false); // same pooled director and builder on every call
+      System.out.println(fleet.length + " " + (fleet[0] != fleet[1]));
+    }
   }
 }
 
@@ -58,28 +64,31 @@ abstract class AircraftBuilder {
   public void buildWings() {}
   public void buildCockpit() {}
   public void buildBathrooms() {}
+  public abstract void reset(); // starts a new product so the builder can be reused
   public abstract Aircraft getResult();
 }
 
 // 2. Concrete Builder
 class Boeing747Builder extends AircraftBuilder {
-  private final Boeing747 aircraft;
-  public Boeing747Builder() { aircraft = new Boeing747(); }
+  private Boeing747 aircraft;
+  public Boeing747Builder() { reset(); }
   @Override public void buildEngine() {}
   @Override public void buildWings() {}
   @Override public void buildCockpit() {}
   @Override public void buildBathrooms() {}
+  @Override public void reset() { aircraft = new Boeing747(); }
   @Override public Boeing747 getResult() { return aircraft; }
 }
 
 // 2. Concrete Builder
 class F16Builder extends AircraftBuilder {
-  private final F16 aircraft;
-  public F16Builder() { aircraft = new F16(); }
+  private F16 aircraft;
+  public F16Builder() { reset(); }
   @Override public void buildEngine() {}
   @Override public void buildWings() {}
   @Override public void buildCockpit() {}
   @Override public void buildBathrooms() {}
+  @Override public void reset() { aircraft = new F16(); }
   @Override public F16 getResult() { return aircraft; }
 }
 
@@ -93,4 +102,23 @@ class Director {
     aircraftBuilder.buildWings();
     if (isPassenger) aircraftBuilder.buildBathrooms();
   }
+  public Aircraft build(boolean isPassenger) { // new product from the same builder
+    aircraftBuilder.reset();
+    construct(isPassenger);
+    return aircraftBuilder.getResult();
+  }
+  public Aircraft[] constructBatch(int n, boolean isPassenger) { // allocates the products and the array only
+    Aircraft[] aircraft = new Aircraft[n];
+    for (int i = 0; i < n; i++) aircraft[i] = build(isPassenger);
+    return aircraft;
+  }
+}
+
+// Thread-local pool of directors with their builders (builders are not thread-safe, so each thread gets its own)
+final class AircraftBuilderPool {
+  private static final ThreadLocal<Director> BOEING747 = ThreadLocal.withInitial(() -> new Director(new Boeing747Builder()));
+  private static final ThreadLocal<Director> F16 = ThreadLocal.withInitial(() -> new Director(new F16Builder()));
+  private AircraftBuilderPool() {}
+  public static Director boeing747() { return BOEING747.get(); }
+  public static Director f16() { return F16.get(); }
 }
@@ -0,0 +1,3 @@
+package com.downvoteit.javadesignpatterns.creational.factorymethod;
+
+@Variant(of = F16Concrete.class, value = "A") class F16AVariantConcrete extends F16Concrete {}
@@ -0,0 +1,3 @@
+package com.downvoteit.javadesignpatterns.creational.factorymethod;
+
+@Variant(of = F16Concrete.class, value = "B") class F16BVariantConcrete extends F16Concrete {}
@@ -0,0 +1,3 @@
+package com.downvoteit.javadesignpatterns.creational.factorymethod;
+
+@Variant(of = F16Concrete.class, value = "C") class F16CVariantConcrete extends F16Concrete {}
@@ -0,0 +1,3 @@
+package com.downvoteit.javadesignpatterns.creational.factorymethod;
+
+class F16Concrete { public void fly() {} }
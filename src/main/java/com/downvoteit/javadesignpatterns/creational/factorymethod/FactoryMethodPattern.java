@@ -2,6 +2,7 @@ package com.downvoteit.javadesignpatterns.creational.factorymethod;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Factory Method pattern
@@ -24,6 +25,7 @@ import java.util.List;
  *
  * Implementations
  * 1. Extend the superclass and update fields
+ * 2. Simple factory backed by a registry generated at compile time from @Variant classes (see VariantRegistryProcessor)
  *
  * Examples in JDK
  * 1. java.util.Calendar.getInstance()
@@ -81,20 +83,12 @@ class F16Naive {
   public void fly() { makeF16(); }
 }
 
-class F16Concrete { public void fly() {} }
-class F16AVariantConcrete extends F16Concrete {}
-class F16BVariantConcrete extends F16Concrete {}
-class F16CVariantConcrete extends F16Concrete {}
-
-// Not extendable (due to method hiding)
+// F16Concrete and its @Variant classes have their own source files since the generated F16ConcreteVariants refers to them
+// Not extendable (due to method hiding), new variants are annotated instead of added to the factory
 class F16SimpleFactory {
   public static F16Concrete makeF16(String variant) {
-    switch (variant) { // concrete implementations
-      case "A": return new F16AVariantConcrete();
-      case "B": return new F16BVariantConcrete();
-      case "C": return new F16CVariantConcrete();
-      default: return new F16Concrete();
-    }
+    Supplier<F16Concrete> constructor = F16ConcreteVariants.get(variant); // generated, constant-time lookup without reflection
+    return constructor != null ? constructor.get() : new F16Concrete();
   }
 }
 
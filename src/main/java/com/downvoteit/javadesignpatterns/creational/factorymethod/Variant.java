@@ -0,0 +1,14 @@
+package com.downvoteit.javadesignpatterns.creational.factorymethod;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Registers a concrete product under a key of the product type (read by VariantRegistryProcessor, gone after compilation)
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+@interface Variant {
+  Class<?> of(); // product type, one generated registry per product type
+  String value(); // variant key
+}
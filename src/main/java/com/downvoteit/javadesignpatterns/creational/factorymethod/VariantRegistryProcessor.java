@@ -0,0 +1,119 @@
+package com.downvoteit.javadesignpatterns.creational.factorymethod;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Compile-time factory registry
+ *
+ * Details
+ * 1. Finds the classes annotated with @Variant while the project is compiled (no reflection or classpath scanning at startup)
+ * 2. Generates one <Product>Variants class per product type next to the product
+ * 3. The generated class maps every variant key to a constructor reference in an immutable map (constant-time lookup)
+ * 4. Invalid variants (abstract, no no-arg constructor, wrong product type, duplicate key) fail the build
+ * 5. Products and variants need their own source files since the generated class refers to them from another file
+ *
+ * Usage
+ * 1. Runs during the default compilation (see the compile-processors execution in pom.xml)
+ *
+ */
+
+public class VariantRegistryProcessor extends AbstractProcessor {
+  static final String VARIANT = "com.downvoteit.javadesignpatterns.creational.factorymethod.Variant";
+  private final Set<String> generated = new HashSet<>();
+
+  @Override public Set<String> getSupportedAnnotationTypes() { return Set.of(VARIANT); } // no @SupportedAnnotationTypes, nothing would claim it when this file is compiled with the processor on
+  @Override public SourceVersion getSupportedSourceVersion() { return SourceVersion.latestSupported(); }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    Map<TypeElement, Map<String, TypeElement>> registries = new TreeMap<>((a, b) -> a.getQualifiedName().toString().compareTo(b.getQualifiedName().toString()));
+    for (TypeElement annotation : annotations)
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) collect(element, registries);
+    registries.forEach(this::generate);
+    return true;
+  }
+
+  private void collect(Element element, Map<TypeElement, Map<String, TypeElement>> registries) {
+    AnnotationMirror variant = element.getAnnotationMirrors().stream()
+        .filter(mirror -> ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(VARIANT))
+        .findFirst().orElseThrow();
+    String key = null;
+    TypeMirror product = null;
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : variant.getElementValues().entrySet()) {
+      String name = value.getKey().getSimpleName().toString();
+      if (name.equals("value")) key = (String) value.getValue().getValue();
+      else if (name.equals("of")) product = (TypeMirror) value.getValue().getValue();
+    }
+    if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+      error(element, "@Variant must annotate a concrete class");
+      return;
+    }
+    if (key == null || product == null) return; // reported by javac already
+    if (!processingEnv.getTypeUtils().isAssignable(element.asType(), product)) {
+      error(element, element + " is not a " + product);
+      return;
+    }
+    if (ElementFilter.constructorsIn(element.getEnclosedElements()).stream()
+        .noneMatch(constructor -> constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))) {
+      error(element, element + " needs a non-private no-arg constructor");
+      return;
+    }
+    TypeElement productElement = (TypeElement) ((DeclaredType) product).asElement();
+    TypeElement existing = registries.computeIfAbsent(productElement, type -> new TreeMap<>()).putIfAbsent(key, (TypeElement) element);
+    if (existing != null) error(element, "Variant \"" + key + "\" of " + productElement + " is already taken by " + existing);
+  }
+
+  private void generate(TypeElement product, Map<String, TypeElement> variants) {
+    String productName = product.getQualifiedName().toString();
+    if (!generated.add(productName)) {
+      error(product, "Variants of " + productName + " must be compiled in one round");
+      return;
+    }
+    PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(product);
+    String registryName = product.getSimpleName() + "Variants";
+    try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(packageElement.getQualifiedName() + "." + registryName, product).openWriter())) {
+      if (!packageElement.isUnnamed()) out.println("package " + packageElement.getQualifiedName() + ";\n");
+      out.println("import java.util.Map;");
+      out.println("import java.util.Set;");
+      out.println("import java.util.function.Supplier;\n");
+      out.println("// Generated by " + getClass().getSimpleName() + " from the @Variant classes of " + product.getSimpleName() + ", do not edit");
+      out.println("final class " + registryName + " {");
+      out.println("  private static final Map<String, Supplier<" + productName + ">> VARIANTS = Map.ofEntries(");
+      int i = 0;
+      for (Map.Entry<String, TypeElement> variant : variants.entrySet()) {
+        out.print("      Map.entry(\"" + escape(variant.getKey()) + "\", (Supplier<" + productName + ">) " + variant.getValue().getQualifiedName() + "::new)");
+        out.println(++i < variants.size() ? "," : ");");
+      }
+      out.println("  private " + registryName + "() {}");
+      out.println("  static Supplier<" + productName + "> get(String variant) { return VARIANTS.get(variant); } // null when unknown");
+      out.println("  static Set<String> variants() { return VARIANTS.keySet(); }");
+      out.println("}");
+    } catch (IOException e) {
+      error(product, "Cannot generate " + registryName + ": " + e.getMessage());
+    }
+  }
+
+  private static String escape(String key) { return key.replace("\\", "\\\\").replace("\"", "\\\""); }
+
+  private void error(Element element, String message) { processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element); }
+}
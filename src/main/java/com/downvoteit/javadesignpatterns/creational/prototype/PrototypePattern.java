@@ -1,5 +1,9 @@
 package com.downvoteit.javadesignpatterns.creational.prototype;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Prototype pattern
  *
@@ -20,6 +24,8 @@ package com.downvoteit.javadesignpatterns.creational.prototype;
  * Implementations
  * 1. Shallow copy clone method
  * 2. Deep copy clone method
+ * 3. Copy-on-write clone method (immutable parts are shared, mutable parts are copied on the first write)
+ * 4. Prototype registry (prototype manager) keyed by variant
  *
  * Examples in JDK
  * 1. java.lang.Cloneable
@@ -36,6 +42,14 @@ public class PrototypePattern {
     // B variant
     AircraftPrototype f16B = aircraftPrototype.clone();
     f16B.setEngine(new F16BEngine());
+    // Registry of configured prototypes
+    AircraftPrototypeRegistry registry = new AircraftPrototypeRegistry();
+    registry.register("A", f16A);
+    f16B.setStore(0, "AIM-9");
+    registry.register("B", f16B);
+    AircraftPrototype[] squadron = registry.cloneN("B", 1_000_000); // engine and stores are shared, not rebuilt
+    squadron[0].setStore(1, "AIM-120"); // copies the stores of this aircraft only
+    System.out.println(squadron[0] + " " + squadron[1]);
   }
 }
 
@@ -49,12 +63,60 @@ interface AircraftPrototype {
   void fly();
   AircraftPrototype clone();
   void setEngine(F16Engine f16Engine);
+  void setStore(int hardpoint, String store);
+  default AircraftPrototype[] cloneN(int n) { // bulk clone
+    AircraftPrototype[] clones = new AircraftPrototype[n];
+    for (int i = 0; i < n; i++) clones[i] = clone();
+    return clones;
+  }
 }
 
 // 2. Concrete Prototype
 class F16 implements AircraftPrototype {
-  private F16Engine f16Engine = new F16Engine();
+  private static final int HARDPOINTS = 9;
+  private F16Engine f16Engine = new F16Engine(); // immutable, shared by clones
+  private String[] stores = new String[HARDPOINTS]; // mutable, shared by clones until one of them writes
+  private boolean storesShared;
+  public F16() {}
+  private F16(F16 prototype) { // copies the configured state
+    this.f16Engine = prototype.f16Engine;
+    this.stores = prototype.stores;
+    this.storesShared = true;
+  }
   @Override public void fly() {}
-  @Override public AircraftPrototype clone() { return new F16(); }
+  @Override
+  public AircraftPrototype clone() {
+    storesShared = true; // the prototype must copy before writing too
+    return new F16(this);
+  }
+  @Override
+  public AircraftPrototype[] cloneN(int n) {
+    storesShared = true;
+    AircraftPrototype[] clones = new AircraftPrototype[n];
+    for (int i = 0; i < n; i++) clones[i] = new F16(this);
+    return clones;
+  }
   @Override public void setEngine(F16Engine f16Engine) { this.f16Engine = f16Engine; }
+  @Override
+  public void setStore(int hardpoint, String store) {
+    if (storesShared) { // copy on write
+      stores = stores.clone();
+      storesShared = false;
+    }
+    stores[hardpoint] = store;
+  }
+  @Override public String toString() { return "F16 " + f16Engine.getClass().getSimpleName() + " " + Arrays.toString(stores); }
+}
+
+// Prototype registry (clients ask for a variant instead of configuring a new object)
+class AircraftPrototypeRegistry {
+  private final Map<String, AircraftPrototype> prototypes = new ConcurrentHashMap<>();
+  public void register(String variant, AircraftPrototype prototype) { prototypes.put(variant, prototype.clone()); } // later changes to the argument are not seen
+  public AircraftPrototype clone(String variant) { return prototype(variant).clone(); }
+  public AircraftPrototype[] cloneN(String variant, int n) { return prototype(variant).cloneN(n); }
+  private AircraftPrototype prototype(String variant) {
+    AircraftPrototype prototype = prototypes.get(variant);
+    if (prototype == null) throw new IllegalArgumentException("Unknown variant " + variant);
+    return prototype;
+  }
 }
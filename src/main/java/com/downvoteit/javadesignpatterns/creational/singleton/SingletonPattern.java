@@ -20,6 +20,8 @@ package com.downvoteit.javadesignpatterns.creational.singleton;
  * 2. Synchronized lazy creation
  * 3. Double-checked locked lazy creation (conditionally synchronized)
  * 4. Eager creation
+ * 5. Initialization-on-demand holder (lazy, synchronized by the class loader)
+ * 6. Enum
  *
  * Examples in JDK
  * 1. java.lang.Runtime
@@ -50,6 +52,14 @@ public class SingletonPattern {
       AirForceOneDoubleCheckedLocking airForceOne = AirForceOneDoubleCheckedLocking.getInstance();
       airForceOne.fly();
     }
+    { // Lazy creation guarded by class initialization
+      AirForceOneHolder airForceOne = AirForceOneHolder.getInstance();
+      airForceOne.fly();
+    }
+    { // Enum
+      AirForceOneEnum airForceOne = AirForceOneEnum.INSTANCE;
+      airForceOne.fly();
+    }
   }
 }
 
@@ -98,3 +108,17 @@ class AirForceOneDoubleCheckedLocking {
     return instance;
   }
 }
+
+// Static nested holder, private/protected constructor, static factory method (no explicit synchronization)
+class AirForceOneHolder {
+  private AirForceOneHolder() {}
+  public void fly() {}
+  private static class Holder { private static final AirForceOneHolder instance = new AirForceOneHolder(); }
+  public static AirForceOneHolder getInstance() { return Holder.instance; } // JVM initializes Holder once on first access
+}
+
+// Enum constant (serialization and reflection safe)
+enum AirForceOneEnum {
+  INSTANCE;
+  public void fly() {}
+}
@@ -1,8 +1,16 @@
 package com.downvoteit.javadesignpatterns.structural.composite;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongBinaryOperator;
+import java.util.function.ToLongFunction;
 
 /**
  * Composite pattern
@@ -24,6 +32,8 @@ import java.util.List;
  * Implementations
  * 1. Option for custom ordering (e.g. pre-order, in-order, post-order)
  * 2. Caching the already visited nodes for search
+ * 3. Caching aggregates in the composite and updating only the ancestors on change (requires parent links, so a part with a parent cannot be shared)
+ * 4. Stack-safe iterators (explicit stack instead of recursion) and fork/join reduction for deep or wide trees
  *
  * Examples in JDK
  * 1. javax.faces.component.UIComponent
@@ -43,28 +53,214 @@ public class CompositePattern {
     natoAlliance.add(frenchF16);
     natoAlliance.add(germanC130Hercules);
     System.out.println(natoAlliance.getPersonnel()); // 1 + 5 = 6
+    E3Sentry usaE3Sentry = new E3Sentry(20); // leaf with a changing state
+    usaAirForce.add(usaE3Sentry); // updates USAAirForce and NATOAirForce only
+    usaE3Sentry.setPersonnel(18);
+    natoAlliance.remove(germanC130Hercules);
+    System.out.println(natoAlliance.getPersonnel() + " " + usaAirForce.getPersonnel()); // 1 + 18 = 19, 18
+    for (TraversalOrder order : TraversalOrder.values()) {
+      Iterator<AlliancePart> parts = natoAlliance.iterator(order); // external iterator, no recursion
+      while (parts.hasNext()) System.out.print(parts.next() + " ");
+      System.out.println();
+    }
+    long personnel = AllianceReduction.reduce(ForkJoinPool.commonPool(), natoAlliance, 0, AlliancePart::getPersonnel, Long::sum);
+    System.out.println(personnel); // 19
   }
 }
 
 // 1. Component
 interface Aircraft {}
-interface AlliancePart { int getPersonnel(); }
+interface AlliancePart {
+  int getPersonnel();
+  default void setParent(AirForce parent) {} // only parts whose personnel can change need to know their parent
+  default AirForce getParent() { return null; }
+  default List<AlliancePart> getParts() { return Collections.emptyList(); } // leaves have no parts
+  default int getSubtreeSize() { return 1; } // number of parts in the subtree including this one
+  default boolean isLeaf() { return true; } // leaves are mapped by AllianceReduction, composites only contribute their parts
+}
+
+enum TraversalOrder { PRE_ORDER, IN_ORDER, POST_ORDER }
 
 // 2. Leaf (parts)
-class F16 implements Aircraft, AlliancePart { @Override public int getPersonnel() { return 1; } }
-class C130Hercules implements Aircraft, AlliancePart { @Override public int getPersonnel() { return 5; } }
+class F16 implements Aircraft, AlliancePart {
+  @Override public int getPersonnel() { return 1; }
+  @Override public String toString() { return "F16"; }
+}
+class C130Hercules implements Aircraft, AlliancePart {
+  @Override public int getPersonnel() { return 5; }
+  @Override public String toString() { return "C130Hercules"; }
+}
+class E3Sentry implements Aircraft, AlliancePart {
+  private int personnel;
+  private AirForce parent;
+  public E3Sentry(int personnel) { this.personnel = personnel; }
+  @Override public int getPersonnel() { return personnel; }
+  @Override public void setParent(AirForce parent) { this.parent = parent; }
+  @Override public AirForce getParent() { return parent; }
+  public void setPersonnel(int personnel) {
+    int delta = personnel - this.personnel;
+    this.personnel = personnel;
+    if (parent != null) parent.subtreeChanged(delta, 0);
+  }
+  @Override public String toString() { return "E3Sentry"; }
+}
 
 // 3. Composite (whole)
 class AirForce implements AlliancePart {
   private final String name;
   private final List<AlliancePart> parts = new ArrayList<>();
+  private final List<AlliancePart> partsView = Collections.unmodifiableList(parts);
+  private AirForce parent;
+  private int personnel; // cached total of the subtree
+  private int subtreeSize = 1; // cached number of parts in the subtree
   public AirForce(String name) { this.name = name; }
-  public void add(AlliancePart part) { parts.add(part); }
+  public void add(AlliancePart part) { // a part that tracks its parent belongs to one air force only, remove it from the old one first
+    if (part.getParent() != null) throw new IllegalArgumentException(part + " already belongs to " + part.getParent());
+    for (AirForce airForce = this; airForce != null; airForce = airForce.parent)
+      if (airForce == part) throw new IllegalArgumentException(part + " cannot be added to its own subtree");
+    parts.add(part);
+    part.setParent(this);
+    subtreeChanged(part.getPersonnel(), part.getSubtreeSize()); // O(1) for composites thanks to the cache
+  }
+  public void remove(AlliancePart part) {
+    if (!parts.remove(part)) return;
+    part.setParent(null);
+    subtreeChanged(-part.getPersonnel(), -part.getSubtreeSize());
+  }
+  @Override public void setParent(AirForce parent) { this.parent = parent; }
+  @Override public AirForce getParent() { return parent; }
+  @Override public int getPersonnel() { return personnel; }
+  @Override public List<AlliancePart> getParts() { return partsView; }
+  @Override public int getSubtreeSize() { return subtreeSize; }
+  @Override public boolean isLeaf() { return false; }
+  public Iterator<AlliancePart> iterator(TraversalOrder order) { return new AlliancePartIterator(this, order); }
+  void subtreeChanged(int personnelDelta, int sizeDelta) { // walks up to the root only, siblings are untouched
+    for (AirForce airForce = this; airForce != null; airForce = airForce.parent) {
+      airForce.personnel += personnelDelta;
+      airForce.subtreeSize += sizeDelta;
+    }
+  }
+  @Override public String toString() { return name; }
+}
+
+// External iterator with an explicit stack (depth of the tree is limited by the heap, not the thread stack)
+class AlliancePartIterator implements Iterator<AlliancePart> {
+  private final Deque<Frame> stack = new ArrayDeque<>();
+  private final TraversalOrder order;
+  private AlliancePart next;
+  public AlliancePartIterator(AlliancePart root, TraversalOrder order) {
+    this.order = order;
+    stack.push(new Frame(root));
+    next = advance();
+  }
+  @Override public boolean hasNext() { return next != null; }
   @Override
-  public int getPersonnel() { // recursive function
-    Iterator<AlliancePart> iterator = parts.iterator(); // internal iterator (client has not access to it)
-    int totalPersonnel = 0;
-    while (iterator.hasNext()) totalPersonnel += iterator.next().getPersonnel();
-    return totalPersonnel;
+  public AlliancePart next() {
+    if (next == null) throw new NoSuchElementException("No more elements");
+    AlliancePart current = next;
+    next = advance();
+    return current;
+  }
+  private AlliancePart advance() {
+    while (!stack.isEmpty()) {
+      Frame frame = stack.peek();
+      List<AlliancePart> parts = frame.part.getParts();
+      if (!frame.visited && isVisitTime(frame.nextPart, parts.size())) {
+        frame.visited = true;
+        return frame.part;
+      }
+      if (frame.nextPart < parts.size()) stack.push(new Frame(parts.get(frame.nextPart++)));
+      else stack.pop();
+    }
+    return null;
+  }
+  private boolean isVisitTime(int visitedParts, int parts) {
+    switch (order) {
+      case PRE_ORDER: return visitedParts == 0; // before the parts
+      case IN_ORDER: return visitedParts == Math.min(1, parts); // after the first part
+      default: return visitedParts == parts; // after the parts
+    }
+  }
+  private static final class Frame {
+    private final AlliancePart part;
+    private int nextPart;
+    private boolean visited;
+    Frame(AlliancePart part) { this.part = part; }
+  }
+}
+
+// Fork/join reduction over the leaves of a tree, sibling ranges are split by the summed size of their subtrees
+// so any mix of wide, deep and mid-sized subtrees is spread over the workers in chunks of about SEQUENTIAL_CUTOFF parts
+// The combiner must be associative and commutative since partial results are combined in any order
+class AllianceReduction extends RecursiveTask<Long> {
+  private static final long serialVersionUID = 1L;
+  static final int SEQUENTIAL_CUTOFF = 1 << 12;
+  private final List<AlliancePart> parts; // siblings [from, to) reduced by this task
+  private final int from;
+  private final int to;
+  private final long identity;
+  private final ToLongFunction<AlliancePart> mapper;
+  private final LongBinaryOperator combiner;
+  private AllianceReduction(List<AlliancePart> parts, int from, int to, long identity, ToLongFunction<AlliancePart> mapper, LongBinaryOperator combiner) {
+    this.parts = parts;
+    this.from = from;
+    this.to = to;
+    this.identity = identity;
+    this.mapper = mapper;
+    this.combiner = combiner;
+  }
+  public static long reduce(ForkJoinPool pool, AlliancePart root, long identity, ToLongFunction<AlliancePart> mapper, LongBinaryOperator combiner) {
+    return pool.invoke(new AllianceReduction(Collections.singletonList(root), 0, 1, identity, mapper, combiner));
+  }
+  @Override
+  protected Long compute() {
+    List<AllianceReduction> forked = new ArrayList<>();
+    List<AlliancePart> siblings = parts;
+    int start = from, end = to;
+    long result;
+    while (true) {
+      if (end - start == 1 && !siblings.get(start).isLeaf() && siblings.get(start).getSubtreeSize() > SEQUENTIAL_CUTOFF) { // large composite, split its parts instead (a deep chain never forks)
+        siblings = siblings.get(start).getParts();
+        start = 0;
+        end = siblings.size();
+        continue;
+      }
+      long total = 0;
+      for (int i = start; i < end; i++) total += siblings.get(i).getSubtreeSize();
+      if (total <= SEQUENTIAL_CUTOFF) {
+        result = reduceSequentially(siblings, start, end);
+        break;
+      }
+      int groupStart = start; // fork every group of about SEQUENTIAL_CUTOFF parts except the last one which stays in this task
+      long groupSize = 0;
+      for (int i = start; i < end - 1; i++) {
+        groupSize += siblings.get(i).getSubtreeSize();
+        if (groupSize < SEQUENTIAL_CUTOFF) continue;
+        forked.add(fork(siblings, groupStart, i + 1));
+        groupStart = i + 1;
+        groupSize = 0;
+      }
+      if (groupStart == start) { // only the last sibling is large, fork the others and split the last one
+        if (end - 1 > start) forked.add(fork(siblings, start, end - 1));
+        start = end - 1;
+      } else start = groupStart;
+    }
+    for (int i = forked.size() - 1; i >= 0; i--) result = combiner.applyAsLong(result, forked.get(i).join());
+    return result;
+  }
+  private long reduceSequentially(List<AlliancePart> siblings, int start, int end) { // explicit stack, no recursion
+    Deque<AlliancePart> stack = new ArrayDeque<>(siblings.subList(start, end));
+    long result = identity;
+    while (!stack.isEmpty()) {
+      AlliancePart part = stack.pop();
+      if (part.isLeaf()) result = combiner.applyAsLong(result, mapper.applyAsLong(part));
+      else for (AlliancePart child : part.getParts()) stack.push(child); // an empty composite adds nothing
+    }
+    return result;
+  }
+  private AllianceReduction fork(List<AlliancePart> siblings, int from, int to) {
+    AllianceReduction task = new AllianceReduction(siblings, from, to, identity, mapper, combiner);
+    task.fork();
+    return task;
   }
 }
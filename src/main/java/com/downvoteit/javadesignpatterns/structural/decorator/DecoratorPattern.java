@@ -18,6 +18,7 @@ package com.downvoteit.javadesignpatterns.structural.decorator;
  * 5. Client
  *
  * Implementations
+ * 1. Sealing (flattening) an immutable decorator stack so queries do not walk the whole chain
  *
  * Examples in JDK
  * 1. Java IO classes such as InputStream, FileInputStream, BufferedInputStream etc
@@ -31,6 +32,8 @@ public class DecoratorPattern {
     Aircraft luxuryBoeing = new LuxuryFittings(simpleBoeing);
     Aircraft bulletproofBoeing = new BulletproofFittings(luxuryBoeing);
     System.out.println(bulletproofBoeing.getBaseWeight());
+    Aircraft sealedBoeing = SealedAircraft.seal(bulletproofBoeing); // weight computed once, fly() and land() go to Boeing747 directly
+    System.out.println(sealedBoeing.getBaseWeight());
   }
 }
 
@@ -50,21 +53,50 @@ class Boeing747 implements Aircraft {
 }
 
 // 3. Decorator
-abstract class BoeingDecorator implements Aircraft {}
+abstract class BoeingDecorator implements Aircraft {
+  protected final Aircraft aircraft; // composition in use
+  protected BoeingDecorator(Aircraft aircraft) { this.aircraft = aircraft; }
+  protected abstract float getFittingWeight();
+  public Aircraft getAircraft() { return aircraft; }
+  @Override public float getBaseWeight() { return getFittingWeight() + aircraft.getBaseWeight(); }
+  @Override public void fly() { aircraft.fly(); } // pass-through unless a fitting adds behaviour
+  @Override public void land() { aircraft.land(); }
+}
 
 // 4. Concrete Decorator
 class LuxuryFittings extends BoeingDecorator {
-  private final Aircraft aircraft; // composition in use
-  public LuxuryFittings(Aircraft aircraft) { this.aircraft = aircraft; }
-  @Override public float getBaseWeight() { return 30f + aircraft.getBaseWeight(); } // 30 + 100
-  @Override public void fly() { aircraft.fly(); }
-  @Override public void land() { aircraft.land(); }
+  public LuxuryFittings(Aircraft aircraft) { super(aircraft); }
+  @Override protected float getFittingWeight() { return 30f; } // 30 + 100
 }
 
 class BulletproofFittings extends BoeingDecorator {
-  private final Aircraft aircraft; // composition in use
-  public BulletproofFittings(Aircraft aircraft) { this.aircraft = aircraft; }
-  @Override public float getBaseWeight() { return 50f + aircraft.getBaseWeight(); } // 50 + 100
-  @Override public void fly() { aircraft.fly(); }
-  @Override public void land() { aircraft.land(); }
+  public BulletproofFittings(Aircraft aircraft) { super(aircraft); }
+  @Override protected float getFittingWeight() { return 50f; } // 50 + 100
+}
+
+// Flattened decorator stack (constant values are computed once, calls skip the pass-through layers)
+final class SealedAircraft implements Aircraft {
+  private final float baseWeight;
+  private final Aircraft flyTarget; // outermost layer whose fly() does more than delegate
+  private final Aircraft landTarget;
+  private SealedAircraft(Aircraft aircraft) {
+    this.baseWeight = aircraft.getBaseWeight(); // same summation order as the chain
+    this.flyTarget = skipPassThrough(aircraft, "fly");
+    this.landTarget = skipPassThrough(aircraft, "land");
+  }
+  public static Aircraft seal(Aircraft aircraft) { return aircraft instanceof SealedAircraft ? aircraft : new SealedAircraft(aircraft); }
+  @Override public float getBaseWeight() { return baseWeight; }
+  @Override public void fly() { flyTarget.fly(); }
+  @Override public void land() { landTarget.land(); }
+  private static Aircraft skipPassThrough(Aircraft aircraft, String method) { // checked once while sealing
+    while (aircraft instanceof BoeingDecorator && isPassThrough(aircraft, method)) aircraft = ((BoeingDecorator) aircraft).getAircraft();
+    return aircraft;
+  }
+  private static boolean isPassThrough(Aircraft decorator, String method) {
+    try {
+      return decorator.getClass().getMethod(method).getDeclaringClass() == BoeingDecorator.class; // not overridden by the fitting
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
 }
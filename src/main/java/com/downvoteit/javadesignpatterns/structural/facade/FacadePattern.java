@@ -1,5 +1,25 @@
 package com.downvoteit.javadesignpatterns.structural.facade;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Facade pattern
  *
@@ -19,6 +39,8 @@ package com.downvoteit.javadesignpatterns.structural.facade;
  * Implementations
  * 1. Singleton
  * 2. Factor method for the subsystems
+ * 3. Asynchronous facade (subsystem calls are nodes of a dependency graph, independent calls run concurrently)
+ * 4. Periodic facade ticks driven by a timing wheel (any number of facades on a fixed thread pool)
  *
  * Examples in JDK
  * 1. javax.faces.context.FacesContext
@@ -38,6 +60,43 @@ public class FacadePattern {
     AutopilotFacade autopilotFacade = new AutopilotFacade(altitudeMonitor, engineController, fuelMonitor, navigationSystem);
     autopilotFacade.autopilotOn();
     autopilotFacade.autopilotOff();
+    // Asynchronous facade, altitude and engine (100 ms each) run together before navigation (100 ms) so it takes 200 ms instead of 300 ms
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    AltitudeMonitor slowAltitudeMonitor = new AltitudeMonitor() { @Override public void autoMonitor() { pause(100); } };
+    EngineController slowEngineController = new EngineController() { @Override public void setEngineSpeed(long speed) { pause(100); } };
+    NavigationSystem slowNavigationSystem = new NavigationSystem() {
+      @Override public void setDirectionBasedOnSpeedAndFuel(AltitudeMonitor altitudeMonitor, FuelMonitor fuelMonitor, EngineController engineController) { pause(100); }
+    };
+    AsyncAutopilotFacade asyncAutopilotFacade = new AsyncAutopilotFacade(slowAltitudeMonitor, slowEngineController, fuelMonitor, slowNavigationSystem, executor, 1, TimeUnit.SECONDS);
+    long started = System.nanoTime();
+    asyncAutopilotFacade.autopilotOn().join();
+    System.out.println(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 300); // true (critical path)
+    asyncAutopilotFacade.autopilotOff().join();
+    // Per-step timeout, navigation never starts since the altitude step failed
+    AsyncAutopilotFacade impatientAutopilotFacade = new AsyncAutopilotFacade(slowAltitudeMonitor, engineController, fuelMonitor, navigationSystem, executor, 10, TimeUnit.MILLISECONDS);
+    impatientAutopilotFacade.autopilotOn().exceptionally(failure -> {
+      System.out.println(failure.getMessage()); // Step altitude failed
+      return null;
+    }).join();
+    executor.shutdown();
+    // 10000 autopilots ticked every 10 ms by a single ticker and 2 workers, spread over 100 wheel slots
+    try (AutopilotTickEngine tickEngine = new AutopilotTickEngine(2, 10, TimeUnit.MILLISECONDS, 100)) {
+      for (int i = 0; i < 10_000; i++) {
+        AutopilotFacade autopilot = new AutopilotFacade(new AltitudeMonitor(), new EngineController(), new FuelMonitor(), new NavigationSystem());
+        autopilot.autopilotOn();
+        tickEngine.register(autopilot);
+      }
+      pause(500);
+      System.out.println(tickEngine.getMetrics());
+    }
+  }
+
+  private static void pause(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
   }
 }
 
@@ -65,6 +124,7 @@ class AutopilotFacade {
   private final EngineController engineController;
   private final FuelMonitor fuelMonitor;
   private final NavigationSystem navigationSystem;
+  private volatile boolean engaged;
 
   public AutopilotFacade(AltitudeMonitor altitudeMonitor, EngineController engineController, FuelMonitor fuelMonitor, NavigationSystem navigationSystem) {
     this.altitudeMonitor = altitudeMonitor;
@@ -77,11 +137,313 @@ class AutopilotFacade {
     altitudeMonitor.autoMonitor();
     engineController.setEngineSpeed(700);
     navigationSystem.setDirectionBasedOnSpeedAndFuel(altitudeMonitor, fuelMonitor, engineController);
+    engaged = true;
   }
 
   public void autopilotOff() {
+    engaged = false;
     altitudeMonitor.disable();
     engineController.disable();
     navigationSystem.disable();
   }
+
+  public void tick() { // periodic control loop step (see AutopilotTickEngine), does nothing while disengaged
+    if (!engaged) return;
+    altitudeMonitor.autoMonitor();
+    navigationSystem.setDirectionBasedOnSpeedAndFuel(altitudeMonitor, fuelMonitor, engineController);
+  }
+}
+
+// 1. Facade (asynchronous, autopilotOn() takes as long as its critical path instead of the sum of all steps)
+class AsyncAutopilotFacade {
+  private final DependencyGraph on = new DependencyGraph();
+  private final DependencyGraph off = new DependencyGraph();
+  private final Executor executor;
+
+  public AsyncAutopilotFacade(AltitudeMonitor altitudeMonitor, EngineController engineController, FuelMonitor fuelMonitor, NavigationSystem navigationSystem,
+                              Executor executor, long stepTimeout, TimeUnit unit) {
+    this.executor = executor;
+    on.add("altitude", altitudeMonitor::autoMonitor, stepTimeout, unit);
+    on.add("engine", () -> engineController.setEngineSpeed(700), stepTimeout, unit);
+    on.add("navigation", () -> navigationSystem.setDirectionBasedOnSpeedAndFuel(altitudeMonitor, fuelMonitor, engineController), stepTimeout, unit, "altitude", "engine");
+    off.add("altitude", altitudeMonitor::disable, stepTimeout, unit);
+    off.add("engine", engineController::disable, stepTimeout, unit);
+    off.add("navigation", navigationSystem::disable, stepTimeout, unit);
+  }
+
+  public CompletableFuture<Void> autopilotOn() { return on.execute(executor); }
+  public CompletableFuture<Void> autopilotOff() { return off.execute(executor); }
+}
+
+// Steps that run as soon as their dependencies are done (dependencies must be added first, so the graph has no cycles)
+// The first failure, timeout or cancellation of the returned future cancels the steps that have not finished yet
+// A queued step checks for cancellation before it starts, a running step is not interrupted and its result is ignored
+class DependencyGraph {
+  private final Map<String, Step> steps = new LinkedHashMap<>(); // insertion order is a topological order
+
+  public DependencyGraph add(String name, Runnable action, long timeout, TimeUnit unit, String... dependsOn) {
+    if (steps.containsKey(name)) throw new IllegalArgumentException("Duplicate step " + name);
+    for (String dependency : dependsOn) if (!steps.containsKey(dependency)) throw new IllegalArgumentException("Unknown dependency " + dependency + " of " + name);
+    steps.put(name, new Step(name, action, timeout, unit, dependsOn));
+    return this;
+  }
+
+  public CompletableFuture<Void> execute(Executor executor) {
+    Map<String, CompletableFuture<Void>> running = new LinkedHashMap<>();
+    List<CompletableFuture<Void>> started = new ArrayList<>(); // completed by the steps themselves, cancelled on failure
+    List<CompletableFuture<Void>> all = new ArrayList<>();
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    for (Step step : steps.values()) {
+      CompletableFuture<?>[] dependencies = new CompletableFuture<?>[step.dependsOn.length];
+      for (int i = 0; i < dependencies.length; i++) dependencies[i] = running.get(step.dependsOn[i]);
+      CompletableFuture<Void> ready = dependencies.length == 0 ? CompletableFuture.completedFuture(null) : CompletableFuture.allOf(dependencies);
+      CompletableFuture<Void> run = new CompletableFuture<>();
+      ready.whenComplete((ignored, failure) -> {
+        if (failure != null) run.completeExceptionally(failure);
+        else submit(step, run, executor);
+      });
+      CompletableFuture<Void> future = run.handle((ignored, failure) -> {
+        if (failure == null) return null;
+        Throwable cause = unwrap(failure);
+        if (cause instanceof CancellationException || cause instanceof StepException) throw new CompletionException(cause); // dependency failed, keep the original
+        throw new CompletionException(new StepException(step.name, cause));
+      });
+      future.whenComplete((ignored, failure) -> { if (failure != null) result.completeExceptionally(unwrap(failure)); });
+      running.put(step.name, future);
+      started.add(run);
+      all.add(future);
+    }
+    CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).thenRun(() -> result.complete(null));
+    result.whenComplete((ignored, failure) -> { if (failure != null) for (CompletableFuture<Void> run : started) run.cancel(false); });
+    return result;
+  }
+
+  private static void submit(Step step, CompletableFuture<Void> run, Executor executor) {
+    try {
+      executor.execute(() -> {
+        if (run.isDone()) return; // cancelled while queued, the action never runs
+        run.orTimeout(step.timeout, step.unit); // timer starts when the step starts running, not while it waits in the queue
+        try {
+          step.action.run();
+          run.complete(null);
+        } catch (RuntimeException | Error e) {
+          run.completeExceptionally(e);
+        }
+      });
+    } catch (RuntimeException e) { // e.g. RejectedExecutionException
+      run.completeExceptionally(e);
+    }
+  }
+
+  private static Throwable unwrap(Throwable failure) { return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure; }
+
+  private static final class Step {
+    private final String name;
+    private final Runnable action;
+    private final long timeout;
+    private final TimeUnit unit;
+    private final String[] dependsOn;
+
+    Step(String name, Runnable action, long timeout, TimeUnit unit, String[] dependsOn) {
+      this.name = name;
+      this.action = action;
+      this.timeout = timeout;
+      this.unit = unit;
+      this.dependsOn = dependsOn.clone();
+    }
+  }
+}
+
+class StepException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+  private final String step;
+
+  public StepException(String step, Throwable cause) {
+    super("Step " + step + " failed", cause);
+    this.step = step;
+  }
+
+  public String getStep() { return step; }
+}
+
+// Fixed-rate ticks for any number of facades with one ticker thread and a fixed worker pool (no thread or ScheduledFuture per facade)
+// Single-level timing wheel, every facade sits in one of the slots and the slots fire one after another over a period
+// A slot whose previous ticks are still running when it is due again is skipped and counted as an overrun
+class AutopilotTickEngine implements AutoCloseable {
+  static final int CHUNK = 256; // facades per worker task
+  private static final AutopilotFacade[] NO_FACADES = new AutopilotFacade[0];
+  private final long periodNanos;
+  private final Slot[] slots;
+  private final ConcurrentMap<AutopilotFacade, Slot> registered = new ConcurrentHashMap<>();
+  private final AtomicInteger nextSlot = new AtomicInteger(); // round robin keeps the slots evenly loaded
+  private final ExecutorService workers;
+  private final Thread ticker;
+  private volatile boolean running = true;
+  private final LongAdder ticks = new LongAdder(); // slot firings
+  private final LongAdder facadeTicks = new LongAdder();
+  private final LongAdder overruns = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder jitterNanos = new LongAdder(); // firing time minus scheduled time
+  private final LongAccumulator maxJitterNanos = new LongAccumulator(Math::max, 0);
+  private final LongAccumulator maxSlotNanos = new LongAccumulator(Math::max, 0); // scheduled time to last tick done
+
+  public AutopilotTickEngine(int threads, long period, TimeUnit unit, int slots) {
+    if (threads < 1 || slots < 1) throw new IllegalArgumentException("threads and slots must be positive");
+    this.periodNanos = unit.toNanos(period);
+    if (periodNanos < slots) throw new IllegalArgumentException("period is shorter than one nanosecond per slot");
+    if (periodNanos > Long.MAX_VALUE / slots) throw new IllegalArgumentException("period is too long");
+    this.slots = new Slot[slots];
+    for (int i = 0; i < slots; i++) this.slots[i] = new Slot();
+    this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "autopilot-tick");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.ticker = new Thread(this::turn, "autopilot-ticker");
+    ticker.setDaemon(true);
+    ticker.start();
+  }
+
+  public void register(AutopilotFacade facade) { // the slot changes inside the map operation, racing with unregister cannot leave a facade behind
+    registered.computeIfAbsent(facade, added -> {
+      Slot slot = slots[Math.floorMod(nextSlot.getAndIncrement(), slots.length)];
+      slot.add(added);
+      return slot;
+    });
+  }
+
+  public void unregister(AutopilotFacade facade) {
+    registered.computeIfPresent(facade, (removed, slot) -> {
+      slot.remove(removed);
+      return null;
+    });
+  }
+
+  public int size() { return registered.size(); }
+
+  public TickMetrics getMetrics() {
+    long fired = ticks.sum();
+    return new TickMetrics(fired, facadeTicks.sum(), overruns.sum(), failures.sum(), fired == 0 ? 0 : jitterNanos.sum() / fired, maxJitterNanos.get(), maxSlotNanos.get());
+  }
+
+  @Override
+  public void close() { // returns once the ticker has stopped and the ticks already handed to the workers are done
+    running = false;
+    LockSupport.unpark(ticker);
+    try {
+      ticker.join();
+      workers.shutdown();
+      while (!workers.awaitTermination(1, TimeUnit.SECONDS)) ; // ticks are short, a stuck facade keeps close() waiting
+    } catch (InterruptedException e) {
+      workers.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void turn() {
+    for (long turnStart = System.nanoTime(); running; turnStart += periodNanos) { // one turn of the wheel per period
+      for (int slot = 0; slot < slots.length && running; slot++) {
+        long scheduled = turnStart + slot * periodNanos / slots.length; // absolute deadlines, late firings do not drift the wheel
+        for (long now; running && (now = System.nanoTime()) - scheduled < 0; ) LockSupport.parkNanos(scheduled - now);
+        if (!running) return;
+        long jitter = System.nanoTime() - scheduled;
+        jitterNanos.add(jitter);
+        maxJitterNanos.accumulate(jitter);
+        ticks.increment();
+        slots[slot].fire(scheduled);
+      }
+    }
+  }
+
+  private final class Slot {
+    private volatile AutopilotFacade[] facades = NO_FACADES; // copy on write, registration is rare compared to ticks
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private final AtomicInteger pendingChunks = new AtomicInteger();
+
+    synchronized void add(AutopilotFacade facade) {
+      AutopilotFacade[] current = facades;
+      AutopilotFacade[] updated = Arrays.copyOf(current, current.length + 1);
+      updated[current.length] = facade;
+      facades = updated;
+    }
+
+    synchronized void remove(AutopilotFacade facade) {
+      AutopilotFacade[] current = facades;
+      for (int i = 0; i < current.length; i++) {
+        if (current[i] != facade) continue;
+        AutopilotFacade[] updated = new AutopilotFacade[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, i);
+        System.arraycopy(current, i + 1, updated, i, updated.length - i);
+        facades = updated;
+        return;
+      }
+    }
+
+    void fire(long scheduled) {
+      AutopilotFacade[] snapshot = facades;
+      if (snapshot.length == 0) return;
+      if (!busy.compareAndSet(false, true)) { // the previous ticks of this slot take longer than the period
+        overruns.increment();
+        return;
+      }
+      int chunks = (snapshot.length + CHUNK - 1) / CHUNK;
+      pendingChunks.set(chunks);
+      for (int from = 0; from < snapshot.length; from += CHUNK) {
+        int chunkFrom = from, chunkTo = Math.min(from + CHUNK, snapshot.length);
+        workers.execute(() -> tick(snapshot, chunkFrom, chunkTo, scheduled));
+      }
+    }
+
+    private void tick(AutopilotFacade[] snapshot, int from, int to, long scheduled) {
+      try {
+        for (int i = from; i < to; i++) {
+          try {
+            snapshot[i].tick();
+          } catch (RuntimeException | Error e) {
+            failures.increment(); // one faulty autopilot must not stop the others
+          }
+        }
+        facadeTicks.add(to - from);
+      } finally { // the slot must be released whatever happens, otherwise every later firing is an overrun
+        if (pendingChunks.decrementAndGet() == 0) {
+          maxSlotNanos.accumulate(System.nanoTime() - scheduled);
+          busy.set(false);
+        }
+      }
+    }
+  }
+}
+
+class TickMetrics {
+  private final long ticks;
+  private final long facadeTicks;
+  private final long overruns;
+  private final long failures;
+  private final long meanJitterNanos;
+  private final long maxJitterNanos;
+  private final long maxSlotNanos;
+
+  public TickMetrics(long ticks, long facadeTicks, long overruns, long failures, long meanJitterNanos, long maxJitterNanos, long maxSlotNanos) {
+    this.ticks = ticks;
+    this.facadeTicks = facadeTicks;
+    this.overruns = overruns;
+    this.failures = failures;
+    this.meanJitterNanos = meanJitterNanos;
+    this.maxJitterNanos = maxJitterNanos;
+    this.maxSlotNanos = maxSlotNanos;
+  }
+
+  public long getTicks() { return ticks; }
+  public long getFacadeTicks() { return facadeTicks; }
+  public long getOverruns() { return overruns; }
+  public long getFailures() { return failures; }
+  public long getMeanJitterNanos() { return meanJitterNanos; }
+  public long getMaxJitterNanos() { return maxJitterNanos; }
+  public long getMaxSlotNanos() { return maxSlotNanos; }
+
+  @Override
+  public String toString() {
+    return String.format("%d ticks, %d facade ticks, %d overruns, %d failures, jitter mean %d us max %d us, slot max %d us",
+        ticks, facadeTicks, overruns, failures, meanJitterNanos / 1000, maxJitterNanos / 1000, maxSlotNanos / 1000);
+  }
 }
@@ -1,7 +1,17 @@
 package com.downvoteit.javadesignpatterns.structural.flyweight;
 
-import java.util.HashMap;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Flyweight pattern
@@ -20,6 +30,9 @@ import java.util.Map;
  * 5. Client
  *
  * Implementations
+ * 1. Interning factory (one shared instance per key, created at most once even when requested from many threads)
+ * 2. Bounded pool (least recently used flyweights are evicted) or weak pool (unused flyweights are garbage collected)
+ * 3. Extrinsic state kept in parallel primitive arrays (struct of arrays) and processed in batches
  *
  * Examples in JDK
  * 1. java.lang.Boolean.valueOf
@@ -35,7 +48,7 @@ public class FlyweightPattern {
         .getF16("B-unshared")
         .getF16("C-unshared")
         .getF16("D");
-    Map<String, Aircraft> pool = f16Factory.getPool();
+    Map<String, Aircraft> pool = f16Factory.getPool(); // read-only view, not a copy
     for (String name: pool.keySet()) {
       Aircraft aircraft = pool.get(name);
       for (int[] coordinate : new int[][]{{2, 4}}) {
@@ -45,6 +58,17 @@ public class FlyweightPattern {
         System.out.println(aircraft + " destination time: " + aircraft.getTimeToDest(currX, currY, 10, 10, 200));
       }
     }
+    F16Factory boundedF16Factory = new F16Factory(2, false); // keeps at most 2 flyweights
+    boundedF16Factory.getF16("A").getF16("B").getF16("A").getF16("C");
+    System.out.println(boundedF16Factory.getPool().keySet()); // B was used least recently (A, C)
+    F16Factory weakF16Factory = new F16Factory(0, true); // keeps flyweights only while they are in use
+    Aircraft inUse = weakF16Factory.intern("E");
+    System.out.println(inUse == weakF16Factory.intern("E"));
+    ExtrinsicStates fleet = new ExtrinsicStates(1_000_000); // extrinsic state of a million aircraft, no object per aircraft
+    for (int i = 0; i < fleet.capacity(); i++) fleet.add(i % 100, i % 50, 10_000, 10_000, 200 + i % 300);
+    double[] timesToDest = new double[fleet.size()];
+    fleet.getTimesToDest(timesToDest, ForkJoinPool.commonPool()); // one tight loop per core
+    System.out.println("First aircraft destination time: " + timesToDest[0]);
   }
 }
 
@@ -55,6 +79,11 @@ class F16Heavyweight {
 // 1. Flyweight
 interface Aircraft {
   double getTimeToDest(int currX, int currY, int destX, int destY, int currSpeed);
+  static double timeToDest(int currX, int currY, int destX, int destY, int currSpeed) { // straight-line distance over speed
+    double dx = destX - currX;
+    double dy = destY - currY;
+    return Math.sqrt(dx * dx + dy * dy) / currSpeed;
+  }
 }
 
 class Data { // common data shared among many objects
@@ -71,7 +100,7 @@ class F16 implements Aircraft {
     this.name = name;
     this.data = data;
   }
-  @Override public double getTimeToDest(int currX, int currY, int destX, int destY, int currSpeed) { return Math.round(Math.random() * 10) + 1; } // extrinsic state
+  @Override public double getTimeToDest(int currX, int currY, int destX, int destY, int currSpeed) { return Aircraft.timeToDest(currX, currY, destX, destY, currSpeed); } // extrinsic state
   @Override public String toString() { return "" + name; }
 }
 
@@ -79,16 +108,165 @@ class F16 implements Aircraft {
 class F16Unshared implements Aircraft {
   private final String name; // other state
   public F16Unshared(String name) { this.name = name; }
-  @Override public double getTimeToDest(int currX, int currY, int destX, int destY, int currSpeed) { return Math.round(Math.random() * 10) + 1; } // extrinsic state
+  @Override public double getTimeToDest(int currX, int currY, int destX, int destY, int currSpeed) { return Aircraft.timeToDest(currX, currY, destX, destY, currSpeed); } // extrinsic state
   @Override public String toString() { return "" + name.replace("-unshared", ""); }
 }
 
-// 4. Flyweight Factor
+// Extrinsic state of many aircraft in parallel primitive arrays (index i is one aircraft)
+class ExtrinsicStates {
+  static final int SEQUENTIAL_CUTOFF = 1 << 14;
+  private final int[] currX;
+  private final int[] currY;
+  private final int[] destX;
+  private final int[] destY;
+  private final int[] currSpeed;
+  private int size;
+  public ExtrinsicStates(int capacity) {
+    currX = new int[capacity];
+    currY = new int[capacity];
+    destX = new int[capacity];
+    destY = new int[capacity];
+    currSpeed = new int[capacity];
+  }
+  public int add(int x, int y, int toX, int toY, int speed) {
+    set(size, x, y, toX, toY, speed);
+    return size++;
+  }
+  public void set(int index, int x, int y, int toX, int toY, int speed) {
+    currX[index] = x;
+    currY[index] = y;
+    destX[index] = toX;
+    destY[index] = toY;
+    currSpeed[index] = speed;
+  }
+  public int size() { return size; }
+  public int capacity() { return currX.length; }
+  public void getTimesToDest(double[] timesToDest) { getTimesToDest(timesToDest, 0, size); }
+  public void getTimesToDest(double[] timesToDest, ForkJoinPool pool) {
+    if (size <= SEQUENTIAL_CUTOFF) getTimesToDest(timesToDest);
+    else pool.invoke(new TimesToDestTask(timesToDest, 0, size));
+  }
+  private void getTimesToDest(double[] timesToDest, int from, int to) { // no virtual calls, sequential access only
+    for (int i = from; i < to; i++) timesToDest[i] = Aircraft.timeToDest(currX[i], currY[i], destX[i], destY[i], currSpeed[i]);
+  }
+  private class TimesToDestTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final double[] timesToDest;
+    private final int from;
+    private final int to;
+    TimesToDestTask(double[] timesToDest, int from, int to) {
+      this.timesToDest = timesToDest;
+      this.from = from;
+      this.to = to;
+    }
+    @Override
+    protected void compute() {
+      if (to - from <= SEQUENTIAL_CUTOFF) {
+        getTimesToDest(timesToDest, from, to);
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new TimesToDestTask(timesToDest, from, mid), new TimesToDestTask(timesToDest, mid, to));
+    }
+  }
+}
+
+// 4. Flyweight Factory (thread-safe, lock-free when the flyweight exists already)
 class F16Factory {
-  private final Map<String, Aircraft> pool = new HashMap<>();
-  public Map<String, Aircraft> getPool() { return new HashMap<>(pool); }
+  private static final Data F16_DATA = new Data(); // intrinsic state shared by every F16
+  private final ConcurrentMap<String, PoolEntry> pool = new ConcurrentHashMap<>();
+  private final Map<String, Aircraft> poolView = new PoolView();
+  private final int maximumSize; // 0 when unbounded
+  private final ReferenceQueue<Aircraft> collected; // null unless flyweights are weakly referenced
+  private Iterator<PoolEntry> clockHand; // guarded by this
+  public F16Factory() { this(0, false); }
+  public F16Factory(int maximumSize, boolean weakValues) {
+    if (maximumSize < 0) throw new IllegalArgumentException("maximumSize must not be negative");
+    this.maximumSize = maximumSize;
+    this.collected = weakValues ? new ReferenceQueue<>() : null;
+  }
+  public Map<String, Aircraft> getPool() { return poolView; }
   protected F16Factory getF16(String name) { // factory method
-    if (!pool.containsKey(name)) pool.put(name, name.contains("unshared") ? new F16Unshared(name) : new F16(name, new Data()));
+    intern(name);
     return this;
   }
+  public Aircraft intern(String name) {
+    PoolEntry entry = pool.get(name);
+    Aircraft aircraft = entry == null ? null : entry.get();
+    if (aircraft == null) return internSlow(name);
+    if (!entry.referenced) entry.referenced = true; // avoid a write on every hit
+    return aircraft;
+  }
+  private Aircraft internSlow(String name) {
+    expungeCollected();
+    Aircraft[] interned = new Aircraft[1];
+    pool.compute(name, (key, current) -> { // creation happens once per key
+      interned[0] = current == null ? null : current.get();
+      if (interned[0] != null) return current;
+      interned[0] = key.contains("unshared") ? new F16Unshared(key) : new F16(key, F16_DATA);
+      return new PoolEntry(key, interned[0], collected);
+    });
+    if (maximumSize > 0 && pool.size() > maximumSize) evict(name);
+    return interned[0];
+  }
+  private synchronized void evict(String newest) { // CLOCK approximation of LRU (recently used entries get a second chance)
+    while (pool.size() > maximumSize) {
+      if (clockHand == null || !clockHand.hasNext()) clockHand = pool.values().iterator();
+      if (!clockHand.hasNext()) return;
+      PoolEntry entry = clockHand.next();
+      if (entry.referenced) entry.referenced = false;
+      else if (!entry.key.equals(newest)) pool.remove(entry.key, entry);
+    }
+  }
+  private void expungeCollected() {
+    if (collected == null) return;
+    for (Object reference; (reference = collected.poll()) != null; ) {
+      PoolEntry entry = (PoolEntry) reference;
+      pool.remove(entry.key, entry);
+    }
+  }
+  private static final class PoolEntry extends WeakReference<Aircraft> {
+    private final String key;
+    private final Aircraft strong; // keeps the flyweight reachable unless the pool is weak
+    private volatile boolean referenced; // set on hits, cleared by the clock hand
+    PoolEntry(String key, Aircraft aircraft, ReferenceQueue<Aircraft> queue) {
+      super(aircraft, queue);
+      this.key = key;
+      this.strong = queue == null ? aircraft : null;
+    }
+  }
+  private final class PoolView extends AbstractMap<String, Aircraft> { // read-only, backed by the pool
+    @Override public Aircraft get(Object key) {
+      PoolEntry entry = pool.get(key);
+      return entry == null ? null : entry.get();
+    }
+    @Override public boolean containsKey(Object key) { return get(key) != null; }
+    @Override public int size() { return pool.size(); }
+    @Override public Set<Map.Entry<String, Aircraft>> entrySet() {
+      return new AbstractSet<>() {
+        @Override public int size() { return pool.size(); }
+        @Override public Iterator<Map.Entry<String, Aircraft>> iterator() {
+          Iterator<PoolEntry> entries = pool.values().iterator();
+          return new Iterator<>() {
+            private Map.Entry<String, Aircraft> next = advance();
+            private Map.Entry<String, Aircraft> advance() {
+              while (entries.hasNext()) {
+                PoolEntry entry = entries.next();
+                Aircraft aircraft = entry.get();
+                if (aircraft != null) return new SimpleImmutableEntry<>(entry.key, aircraft); // skip collected flyweights
+              }
+              return null;
+            }
+            @Override public boolean hasNext() { return next != null; }
+            @Override public Map.Entry<String, Aircraft> next() {
+              if (next == null) throw new NoSuchElementException("No more elements");
+              Map.Entry<String, Aircraft> current = next;
+              next = advance();
+              return current;
+            }
+          };
+        }
+      };
+    }
+  }
 }
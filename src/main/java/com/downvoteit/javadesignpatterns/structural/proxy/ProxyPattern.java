@@ -1,9 +1,53 @@
 package com.downvoteit.javadesignpatterns.structural.proxy;
 
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
 /**
  * Proxy pattern
  *
  * Details
+ * 1. Provides a surrogate or placeholder for another object to control access to it
+ * 2. Proxy and real subject share the same interface so the client cannot tell them apart
+ * 3. Can defer creation of an expensive object until it is needed (virtual proxy)
+ * 4. Can add behaviour around the calls (e.g. caching, access checks, remote calls) without changing the real subject
+ * 5. Remote proxy hides the network protocol (framing, pipelining of requests, matching of responses) from the client
  *
  * Components
  * 1. Proxy
@@ -14,6 +58,9 @@ package com.downvoteit.javadesignpatterns.structural.proxy;
  * 1. Remote proxy
  * 2. Virtual proxy
  * 3. Protection proxy
+ * 4. Caching proxy
+ * 5. Single-flight proxy (concurrent identical calls share one call to the real subject)
+ * 6. Instrumentation proxy (dynamic proxy of any interface that records call counts and latencies)
  *
  * Examples in JDK
  * 1. java.lang.reflect.Proxy
@@ -25,7 +72,601 @@ package com.downvoteit.javadesignpatterns.structural.proxy;
  */
 
 public class ProxyPattern {
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException, InterruptedException {
+    { // Virtual proxy (the spec repository is loaded on the first call only)
+      VirtualAircraftServiceProxy aircraftService = new VirtualAircraftServiceProxy(() -> new AircraftSpecRepository(0));
+      System.out.println(aircraftService.isLoaded()); // false
+      System.out.println(aircraftService.getSpec("F16"));
+      System.out.println(aircraftService.isLoaded()); // true
+    }
+    { // Caching proxy on top of the virtual proxy
+      CachingAircraftServiceProxy aircraftService = new CachingAircraftServiceProxy(
+          new VirtualAircraftServiceProxy(() -> new AircraftSpecRepository(0)), 2, 1, TimeUnit.MINUTES);
+      for (String model : new String[]{"F16", "F16", "Boeing747", "C130Hercules", "F16"}) aircraftService.getSpec(model);
+      System.out.println(aircraftService); // 1 hit, 4 misses, 2 evictions (least recently used first)
+    }
+    { // Remote proxy (many calls in flight on one connection, no thread per call)
+      try (AircraftServiceServer server = new AircraftServiceServer(new AircraftSpecRepository(0));
+           RemoteAircraftServiceProxy aircraftService = new RemoteAircraftServiceProxy(server.getAddress())) {
+        System.out.println(aircraftService.getSpec("Boeing747")); // blocking call
+        List<CompletableFuture<AircraftSpec>> calls = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) calls.add(aircraftService.getSpecAsync(i % 2 == 0 ? "F16" : "C130Hercules"));
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+        System.out.println(calls.size() + " remote calls completed");
+      }
+    }
+    { // Single-flight proxy (100 concurrent callers of a cold key, 1 slow load)
+      LongAdder loads = new LongAdder();
+      AircraftSpecRepository repository = new AircraftSpecRepository(50);
+      SingleFlightAircraftServiceProxy aircraftService = new SingleFlightAircraftServiceProxy(model -> {
+        loads.increment();
+        return repository.getSpec(model);
+      });
+      ExecutorService callers = Executors.newFixedThreadPool(100);
+      CountDownLatch done = new CountDownLatch(100);
+      for (int i = 0; i < 100; i++) callers.execute(() -> {
+        aircraftService.getSpec("F16");
+        done.countDown();
+      });
+      done.await();
+      callers.shutdown();
+      System.out.println("loads " + loads.sum() + ", coalesced " + aircraftService.getCoalescedCalls()); // typically 1 and 99
+    }
+    { // Instrumentation proxy (any interface, snapshots can be taken while calls are running)
+      TimingProxy<Aircraft> timingProxy = TimingProxy.create(Aircraft.class, new F16());
+      Aircraft aircraft = timingProxy.getProxy();
+      for (int i = 0; i < 1000; i++) {
+        aircraft.fly();
+        aircraft.land();
+      }
+      timingProxy.snapshot().forEach((method, latency) -> System.out.println(method + " " + latency));
+    }
+  }
+}
+
+class AircraftSpec { // immutable, safe to share between callers
+  private final String model;
+  private final int crew;
+  private final int maxSpeed;
+  public AircraftSpec(String model, int crew, int maxSpeed) {
+    this.model = model;
+    this.crew = crew;
+    this.maxSpeed = maxSpeed;
+  }
+  public String getModel() { return model; }
+  public int getCrew() { return crew; }
+  public int getMaxSpeed() { return maxSpeed; }
+  @Override public String toString() { return model + " (crew " + crew + ", max speed " + maxSpeed + ")"; }
+}
+
+// 2. Subject
+interface AircraftService { AircraftSpec getSpec(String model); }
+
+// 3. Real Subject (expensive to create and to query)
+class AircraftSpecRepository implements AircraftService {
+  private final Map<String, AircraftSpec> specs = new HashMap<>();
+  private final long loadMillis;
+  public AircraftSpecRepository(long loadMillis) { // loads every record up front
+    this.loadMillis = loadMillis;
+    specs.put("F16", new AircraftSpec("F16", 1, 2120));
+    specs.put("Boeing747", new AircraftSpec("Boeing747", 3, 988));
+    specs.put("C130Hercules", new AircraftSpec("C130Hercules", 5, 592));
+  }
+  @Override
+  public AircraftSpec getSpec(String model) {
+    if (loadMillis > 0) {
+      try {
+        Thread.sleep(loadMillis); // simulated slow read
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    AircraftSpec spec = specs.get(model);
+    if (spec == null) throw new IllegalArgumentException("Unknown model " + model);
+    return spec;
+  }
+}
+
+// 1. Proxy (virtual, creates the real subject on first use)
+class VirtualAircraftServiceProxy implements AircraftService {
+  private final Supplier<? extends AircraftService> loader;
+  private volatile AircraftService service;
+  public VirtualAircraftServiceProxy(Supplier<? extends AircraftService> loader) { this.loader = loader; }
+  @Override public AircraftSpec getSpec(String model) { return service().getSpec(model); }
+  public boolean isLoaded() { return service != null; }
+  private AircraftService service() { // double-checked locking
+    AircraftService current = service;
+    if (current == null)
+      synchronized (this) {
+        current = service;
+        if (current == null) service = current = loader.get();
+      }
+    return current;
+  }
+}
 
+// 1. Proxy (caching, bounded by size with least recently used eviction and by time to live)
+class CachingAircraftServiceProxy implements AircraftService {
+  private final AircraftService service;
+  private final long timeToLiveNanos;
+  private final Map<String, CacheEntry> cache; // guarded by itself
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  public CachingAircraftServiceProxy(AircraftService service, int maximumSize, long timeToLive, TimeUnit unit) {
+    if (maximumSize < 1) throw new IllegalArgumentException("maximumSize must be positive");
+    this.service = service;
+    this.timeToLiveNanos = unit.toNanos(timeToLive);
+    this.cache = new LinkedHashMap<>(16, 0.75f, true) { // access order
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+        if (size() <= maximumSize) return false;
+        evictions.increment();
+        return true;
+      }
+    };
+  }
+  @Override
+  public AircraftSpec getSpec(String model) {
+    long now = System.nanoTime();
+    synchronized (cache) {
+      CacheEntry entry = cache.get(model);
+      if (entry != null && now - entry.loadedAt < timeToLiveNanos) {
+        hits.increment();
+        return entry.spec;
+      }
+      if (entry != null) { // expired
+        cache.remove(model);
+        evictions.increment();
+      }
+    }
+    misses.increment();
+    AircraftSpec spec = service.getSpec(model); // loaded without holding the lock
+    synchronized (cache) { cache.put(model, new CacheEntry(spec, now)); }
+    return spec;
+  }
+  public long getHits() { return hits.sum(); }
+  public long getMisses() { return misses.sum(); }
+  public long getEvictions() { return evictions.sum(); }
+  @Override public String toString() { return "hits " + getHits() + ", misses " + getMisses() + ", evictions " + getEvictions(); }
+  private static final class CacheEntry {
+    private final AircraftSpec spec;
+    private final long loadedAt;
+    CacheEntry(AircraftSpec spec, long loadedAt) {
+      this.spec = spec;
+      this.loadedAt = loadedAt;
+    }
+  }
+}
+
+// 1. Proxy (single-flight, the first caller of a key loads it and concurrent callers of the same key wait for its result)
+class SingleFlightAircraftServiceProxy implements AircraftService {
+  private final AircraftService service;
+  private final ConcurrentMap<String, CompletableFuture<AircraftSpec>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder coalescedCalls = new LongAdder();
+  public SingleFlightAircraftServiceProxy(AircraftService service) { this.service = service; }
+  @Override
+  public AircraftSpec getSpec(String model) {
+    CompletableFuture<AircraftSpec> call = new CompletableFuture<>();
+    CompletableFuture<AircraftSpec> existing = inFlight.putIfAbsent(model, call);
+    if (existing != null) {
+      coalescedCalls.increment();
+      return await(existing);
+    }
+    try {
+      AircraftSpec spec = service.getSpec(model);
+      call.complete(spec);
+      return spec;
+    } catch (RuntimeException | Error e) {
+      call.completeExceptionally(e); // every waiting caller gets the same exception
+      throw e;
+    } finally {
+      inFlight.remove(model, call); // later callers start a new load (results are not cached)
+    }
+  }
+  public long getCoalescedCalls() { return coalescedCalls.sum(); }
+  private static AircraftSpec await(CompletableFuture<AircraftSpec> call) {
+    try {
+      return call.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      if (e.getCause() instanceof Error) throw (Error) e.getCause();
+      throw e;
+    }
+  }
+}
+
+interface Aircraft {
+  void fly();
+  void land();
+}
+
+class F16 implements Aircraft {
+  @Override public void fly() {}
+  @Override public void land() {}
+}
+
+// 1. Proxy (dynamic, forwards through method handles resolved once per method and records latencies)
+class TimingProxy<T> implements InvocationHandler {
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+  private final T proxy;
+  private final Map<Method, TimedMethod> methods = new HashMap<>(); // read-only after construction
+  private TimingProxy(Class<T> type, T target) {
+    List<Method> proxied = new ArrayList<>(List.of(type.getMethods()));
+    try {
+      proxied.add(Object.class.getMethod("hashCode"));
+      proxied.add(Object.class.getMethod("toString"));
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+    for (Method method : proxied) methods.put(method, new TimedMethod(signature(method), handle(method, target)));
+    this.proxy = type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, this));
+  }
+  public static <T> TimingProxy<T> create(Class<T> type, T target) {
+    if (!type.isInterface()) throw new IllegalArgumentException(type + " is not an interface");
+    return new TimingProxy<>(type, target);
+  }
+  public T getProxy() { return proxy; }
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    TimedMethod timedMethod = methods.get(method);
+    if (timedMethod == null) return proxy == args[0]; // equals (the target would compare itself with the proxy)
+    long start = System.nanoTime();
+    try {
+      return timedMethod.handle.invokeExact(args == null ? NO_ARGUMENTS : args); // exceptions of the target are not wrapped
+    } finally {
+      timedMethod.latency.record(System.nanoTime() - start);
+    }
+  }
+  public Map<String, LatencySnapshot> snapshot() { // does not block the callers
+    Map<String, LatencySnapshot> snapshot = new TreeMap<>();
+    for (TimedMethod timedMethod : methods.values()) {
+      LatencySnapshot latency = timedMethod.latency.snapshot();
+      if (latency.getCount() > 0) snapshot.put(timedMethod.signature, latency);
+    }
+    return snapshot;
+  }
+  private static MethodHandle handle(Method method, Object target) { // (Object[])Object bound to the target
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.lookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      method.setAccessible(true); // interface not accessible from this package
+      try {
+        handle = MethodHandles.lookup().unreflect(method);
+      } catch (IllegalAccessException again) {
+        throw new IllegalArgumentException("Cannot access " + method, again);
+      }
+    }
+    int parameters = method.getParameterCount();
+    return handle.bindTo(target).asType(MethodType.genericMethodType(parameters)).asSpreader(Object[].class, parameters);
+  }
+  private static String signature(Method method) {
+    StringBuilder signature = new StringBuilder(method.getName()).append('(');
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    for (int i = 0; i < parameterTypes.length; i++) signature.append(i == 0 ? "" : ", ").append(parameterTypes[i].getSimpleName());
+    return signature.append(')').toString();
+  }
+  private static final class TimedMethod {
+    private final String signature;
+    private final MethodHandle handle;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    TimedMethod(String signature, MethodHandle handle) {
+      this.signature = signature;
+      this.handle = handle;
+    }
+  }
+}
+
+// Power of two buckets of nanoseconds (fixed memory, striped counters so writers do not contend)
+class LatencyHistogram {
+  static final int BUCKETS = 64; // bucket i counts latencies in [2^(i-1), 2^i) nanoseconds
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+  public LatencyHistogram() { for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder(); }
+  public void record(long nanos) {
+    buckets[Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, nanos))].increment(); // at most 63 for a non-negative long
+    totalNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+  public LatencySnapshot snapshot() { // sums while writers keep recording (not an atomic cut)
+    long[] counts = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) count += counts[i] = buckets[i].sum();
+    return new LatencySnapshot(count, totalNanos.sum(), maxNanos.get(), counts);
+  }
+}
+
+class LatencySnapshot {
+  private final long count;
+  private final long totalNanos;
+  private final long maxNanos;
+  private final long[] buckets;
+  public LatencySnapshot(long count, long totalNanos, long maxNanos, long[] buckets) {
+    this.count = count;
+    this.totalNanos = totalNanos;
+    this.maxNanos = maxNanos;
+    this.buckets = buckets;
+  }
+  public long getCount() { return count; }
+  public double getMeanNanos() { return count == 0 ? 0 : (double) totalNanos / count; }
+  public long getMaxNanos() { return maxNanos; }
+  public long getPercentileNanos(double percentile) { // upper bound of the bucket that holds the percentile
+    long rank = (long) Math.ceil(percentile / 100 * count), seen = 0;
+    for (int i = 0; i < buckets.length; i++) if ((seen += buckets[i]) >= rank && seen > 0) return i == 0 ? 0 : i == Long.SIZE - 1 ? maxNanos : Math.min(maxNanos, 1L << i);
+    return maxNanos;
+  }
+  @Override
+  public String toString() {
+    return "calls " + count + ", mean " + Math.round(getMeanNanos()) + "ns, p50 " + getPercentileNanos(50) + "ns, p99 " + getPercentileNanos(99) + "ns, max " + maxNanos + "ns";
+  }
+}
+
+// Wire format shared by the remote proxy and the server (every frame starts with its length)
+// Request: int length, long id, short model length, model bytes
+// Response: int length, long id, byte status, then model, int crew, int max speed (OK) or error message (ERROR)
+final class AircraftServiceProtocol {
+  static final byte OK = 0;
+  static final byte ERROR = 1;
+  static final int MAX_TEXT = 1024; // bytes of a model name or an error message
+  static final int MAX_FRAME = 4 + 8 + 1 + 2 + MAX_TEXT + 4 + 4;
+  static final int BUFFER_SIZE = 64 * 1024;
+  private AircraftServiceProtocol() {}
+  static void putText(ByteBuffer buffer, byte[] text) {
+    buffer.putShort((short) text.length);
+    buffer.put(text);
+  }
+  static String getText(ByteBuffer buffer) {
+    byte[] text = new byte[buffer.getShort()];
+    buffer.get(text);
+    return new String(text, StandardCharsets.UTF_8);
+  }
+  static boolean hasFrame(ByteBuffer buffer) { // buffer in read mode
+    return buffer.remaining() >= 4 && buffer.remaining() >= 4 + buffer.getInt(buffer.position());
+  }
+  static void endFrame(ByteBuffer buffer, int start) { buffer.putInt(start, buffer.position() - start - 4); }
+}
+
+// 1. Proxy (remote, pipelines every call on one non-blocking connection and writes queued calls in batches)
+// Futures are completed on the I/O thread, so dependent stages run there and must not block (use getSpecAsync or the *Async stages)
+class RemoteAircraftServiceProxy implements AircraftService, AutoCloseable {
+  private final SocketChannel channel;
+  private final Selector selector;
+  private final SelectionKey key;
+  private final Map<Long, CompletableFuture<AircraftSpec>> inFlight = new ConcurrentHashMap<>();
+  private final Queue<Call> queued = new ConcurrentLinkedQueue<>(); // calls not written yet
+  private final AtomicLong ids = new AtomicLong();
+  private final AtomicBoolean wakeupRequested = new AtomicBoolean(); // one selector wakeup per batch, not per call
+  private final ByteBuffer out = ByteBuffer.allocateDirect(AircraftServiceProtocol.BUFFER_SIZE);
+  private final ByteBuffer in = ByteBuffer.allocateDirect(AircraftServiceProtocol.BUFFER_SIZE);
+  private final Thread ioThread;
+  public RemoteAircraftServiceProxy(InetSocketAddress address) throws IOException {
+    channel = SocketChannel.open(address);
+    channel.configureBlocking(false);
+    selector = Selector.open();
+    key = channel.register(selector, SelectionKey.OP_READ);
+    ioThread = new Thread(this::run, "aircraft-service-client");
+    ioThread.setDaemon(true);
+    ioThread.start();
+  }
+  @Override
+  public AircraftSpec getSpec(String model) {
+    if (Thread.currentThread() == ioThread) throw new IllegalStateException("Blocking call on the I/O thread would never complete, use getSpecAsync");
+    try {
+      return getSpecAsync(model).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw e;
+    }
+  }
+  public CompletableFuture<AircraftSpec> getSpecAsync(String model) {
+    CompletableFuture<AircraftSpec> result = new CompletableFuture<>();
+    byte[] text = model.getBytes(StandardCharsets.UTF_8);
+    if (text.length > AircraftServiceProtocol.MAX_TEXT) {
+      result.completeExceptionally(new IllegalArgumentException("Model name too long"));
+      return result;
+    }
+    if (!channel.isOpen()) {
+      result.completeExceptionally(new IllegalStateException("Connection closed"));
+      return result;
+    }
+    long id = ids.incrementAndGet();
+    inFlight.put(id, result); // registered before the request can be answered
+    if (!channel.isOpen()) { // closed after the check above, failInFlight() may have missed this call
+      if (inFlight.remove(id, result)) result.completeExceptionally(new IllegalStateException("Connection closed"));
+      return result;
+    }
+    queued.offer(new Call(id, text));
+    if (wakeupRequested.compareAndSet(false, true)) selector.wakeup();
+    return result;
+  }
+  private void run() {
+    try {
+      while (channel.isOpen()) {
+        selector.select();
+        selector.selectedKeys().clear();
+        wakeupRequested.set(false); // calls queued from now on need a new wakeup
+        if (key.isReadable()) read();
+        while (write() && !queued.isEmpty()) ; // keep batching while the socket accepts everything
+      }
+    } catch (IOException | CancelledKeyException e) {
+      // connection closed, pending calls are failed below
+    } finally {
+      closeQuietly(channel);
+      closeQuietly(selector);
+      failInFlight();
+    }
+  }
+  private boolean write() throws IOException { // returns true when everything buffered was written
+    for (Call call; out.remaining() >= AircraftServiceProtocol.MAX_FRAME && (call = queued.poll()) != null; ) {
+      int start = out.position();
+      out.putInt(0).putLong(call.id);
+      AircraftServiceProtocol.putText(out, call.model);
+      AircraftServiceProtocol.endFrame(out, start);
+    }
+    out.flip();
+    channel.write(out); // one write for many small requests
+    out.compact();
+    boolean flushed = out.position() == 0;
+    key.interestOps(flushed ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    return flushed;
+  }
+  private void read() throws IOException {
+    if (channel.read(in) < 0) throw new IOException("Connection closed by the server");
+    in.flip();
+    while (AircraftServiceProtocol.hasFrame(in)) {
+      in.getInt();
+      CompletableFuture<AircraftSpec> result = inFlight.remove(in.getLong());
+      if (in.get() == AircraftServiceProtocol.OK) {
+        AircraftSpec spec = new AircraftSpec(AircraftServiceProtocol.getText(in), in.getInt(), in.getInt());
+        if (result != null) result.complete(spec);
+      } else {
+        String message = AircraftServiceProtocol.getText(in);
+        if (result != null) result.completeExceptionally(new IllegalStateException("Remote call failed: " + message));
+      }
+    }
+    in.compact();
+  }
+  private void failInFlight() { // the channel is closed first, calls registered after this sweep fail themselves in getSpecAsync
+    for (Iterator<CompletableFuture<AircraftSpec>> results = inFlight.values().iterator(); results.hasNext(); ) {
+      results.next().completeExceptionally(new IllegalStateException("Connection closed"));
+      results.remove();
+    }
+    queued.clear();
+  }
+  static void closeQuietly(AutoCloseable closeable) {
+    try {
+      closeable.close();
+    } catch (Exception ignored) {
+      // nothing left to release
+    }
+  }
+  @Override
+  public void close() throws IOException {
+    channel.close();
+    selector.wakeup(); // the I/O thread releases the rest
+    try {
+      ioThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+  private static final class Call {
+    private final long id;
+    private final byte[] model;
+    Call(long id, byte[] model) {
+      this.id = id;
+      this.model = model;
+    }
+  }
+}
+
+// Stand-in for the remote side (loopback server with one selector thread, answers requests in arrival order)
+class AircraftServiceServer implements AutoCloseable {
+  private final AircraftService service;
+  private final ServerSocketChannel serverChannel;
+  private final Selector selector;
+  private final Thread ioThread;
+  public AircraftServiceServer(AircraftService service) throws IOException {
+    this.service = service;
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)); // any free port
+    serverChannel.configureBlocking(false);
+    selector = Selector.open();
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    ioThread = new Thread(this::run, "aircraft-service-server");
+    ioThread.setDaemon(true);
+    ioThread.start();
+  }
+  public InetSocketAddress getAddress() throws IOException { return (InetSocketAddress) serverChannel.getLocalAddress(); }
+  private void run() {
+    try {
+      while (serverChannel.isOpen()) {
+        selector.select();
+        for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); ) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (key.isAcceptable()) accept();
+          else serve(key);
+        }
+      }
+    } catch (IOException e) {
+      // server closed
+    } finally {
+      for (SelectionKey key : selector.keys()) RemoteAircraftServiceProxy.closeQuietly(key.channel());
+      RemoteAircraftServiceProxy.closeQuietly(selector);
+    }
+  }
+  private void accept() throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null) return;
+    channel.configureBlocking(false);
+    channel.register(selector, SelectionKey.OP_READ, new Connection());
+  }
+  private void serve(SelectionKey key) {
+    SocketChannel channel = (SocketChannel) key.channel();
+    Connection connection = (Connection) key.attachment();
+    try { // a failing connection is closed without affecting the others
+      if (key.isReadable() && channel.read(connection.in) < 0) {
+        channel.close();
+        return;
+      }
+      boolean flushed;
+      do {
+        respond(connection);
+        connection.out.flip();
+        channel.write(connection.out);
+        connection.out.compact();
+        flushed = connection.out.position() == 0;
+      } while (flushed && hasRequest(connection));
+      key.interestOps(flushed ? SelectionKey.OP_READ : SelectionKey.OP_WRITE); // stop reading until responses drain
+    } catch (IOException | CancelledKeyException e) {
+      RemoteAircraftServiceProxy.closeQuietly(channel);
+    }
+  }
+  private boolean hasRequest(Connection connection) {
+    connection.in.flip();
+    boolean hasFrame = AircraftServiceProtocol.hasFrame(connection.in);
+    connection.in.compact();
+    return hasFrame;
+  }
+  private void respond(Connection connection) { // answers buffered requests while there is room for the responses
+    ByteBuffer in = connection.in, out = connection.out;
+    in.flip();
+    while (out.remaining() >= AircraftServiceProtocol.MAX_FRAME && AircraftServiceProtocol.hasFrame(in)) {
+      in.getInt();
+      long id = in.getLong();
+      String model = AircraftServiceProtocol.getText(in);
+      int start = out.position();
+      out.putInt(0).putLong(id);
+      try {
+        AircraftSpec spec = service.getSpec(model);
+        out.put(AircraftServiceProtocol.OK);
+        AircraftServiceProtocol.putText(out, spec.getModel().getBytes(StandardCharsets.UTF_8));
+        out.putInt(spec.getCrew()).putInt(spec.getMaxSpeed());
+      } catch (RuntimeException e) {
+        String message = String.valueOf(e.getMessage());
+        byte[] text = message.substring(0, Math.min(message.length(), AircraftServiceProtocol.MAX_TEXT / 4)).getBytes(StandardCharsets.UTF_8);
+        out.put(AircraftServiceProtocol.ERROR);
+        AircraftServiceProtocol.putText(out, text);
+      }
+      AircraftServiceProtocol.endFrame(out, start);
+    }
+    in.compact();
+  }
+  @Override
+  public void close() throws IOException {
+    serverChannel.close();
+    selector.wakeup(); // the I/O thread closes the connections
+    try {
+      ioThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+  private static final class Connection {
+    private final ByteBuffer in = ByteBuffer.allocate(AircraftServiceProtocol.BUFFER_SIZE);
+    private final ByteBuffer out = ByteBuffer.allocate(AircraftServiceProtocol.BUFFER_SIZE);
   }
 }